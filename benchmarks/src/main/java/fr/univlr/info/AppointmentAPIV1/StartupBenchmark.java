@@ -0,0 +1,48 @@
+package fr.univlr.info.AppointmentAPIV1;
+
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepositoryBenchmark;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the application, up to the first response of {@code GET /api/doctors} (with lazy initialization
+ * the first request creates the beans left out of the startup), default profile against fast-start.
+ * One measure per fork, so every measure pays for the class loading and JIT of a fresh JVM. The component index
+ * is only there if the application was installed with {@code -Pfast-start}, the AppCDS archive can be given with
+ * {@code -jvmArgsAppend -XX:SharedArchiveFile=...} (dumped with the classpath of the benchmarks jar).
+ * Run by {@code mvn -Pbenchmarks verify} in the parent directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    @Param({"default", "fast-start"})
+    private String profile;
+
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public int startAndServeFirstRequest() throws IOException, InterruptedException {
+        this.context = AppointmentRepositoryBenchmark.start("spring.profiles.active=" + this.profile);
+        String port = this.context.getEnvironment().getProperty("local.server.port");
+        HttpResponse<Void> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/doctors")).build(),
+                HttpResponse.BodyHandlers.discarding());
+        return response.statusCode();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (this.context != null) this.context.close();
+    }
+}
@@ -0,0 +1,38 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start/end coherence check run by bean validation on every POST /api/appointments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentDateValidatorBenchmark {
+    private final AppointmentDateValidator validator = new AppointmentDateValidator();
+    private Appointment coherent, incoherent;
+
+    @Setup
+    public void setup() {
+        long now = System.currentTimeMillis();
+        this.coherent = new Appointment("mjones", new Date(now), new Date(now + TimeUnit.MINUTES.toMillis(30)), "patient1");
+        this.incoherent = new Appointment("mjones", new Date(now), new Date(now - TimeUnit.MINUTES.toMillis(30)), "patient2");
+    }
+
+    @Benchmark
+    public boolean coherent() {
+        return this.validator.isValid(this.coherent, null);
+    }
+
+    @Benchmark
+    public boolean incoherent() {
+        return this.validator.isValid(this.incoherent, null);
+    }
+}
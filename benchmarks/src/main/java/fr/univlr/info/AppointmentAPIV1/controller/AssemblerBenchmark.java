@@ -0,0 +1,84 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * HAL assembling of a whole collection : precomputed link templates against the
+ * linkTo(methodOn(...)) links the assemblers used to build for every entity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssemblerBenchmark {
+    @Param({"10000"})
+    private int size;
+
+    private List<Appointment> appointments;
+    private AppointmentModelAssembler assembler;
+
+    @Setup
+    public void setup() {
+        // links are absolute, so a request must be bound to the benchmark thread
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/appointments");
+        request.setServerName("localhost");
+        request.setServerPort(8080);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        this.assembler = new AppointmentModelAssembler(new LinkTemplates());
+        this.appointments = new ArrayList<>(this.size);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < this.size; i++) {
+            // half of them in the future, so that they get the cancel and update links
+            long start = now + (i % 2 == 0 ? 1 : -1) * TimeUnit.DAYS.toMillis(1 + i);
+            Appointment appt = new Appointment("mjones", new Date(start), new Date(start + TimeUnit.MINUTES.toMillis(30)), "patient" + i);
+            appt.setId((long) i + 1);
+            this.appointments.add(appt);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public List<EntityModel<Appointment>> linkTemplates() {
+        List<EntityModel<Appointment>> models = new ArrayList<>(this.size);
+        for (Appointment appointment : this.appointments) {
+            models.add(this.assembler.toModel(appointment));
+        }
+        return models;
+    }
+
+    @Benchmark
+    public List<EntityModel<Appointment>> methodOnLinks() {
+        List<EntityModel<Appointment>> models = new ArrayList<>(this.size);
+        for (Appointment appointment : this.appointments) {
+            EntityModel<Appointment> appointmentModel = EntityModel.of(appointment,
+                    linkTo(methodOn(AppointmentController.class).one(null, null, appointment.getId())).withSelfRel(),
+                    linkTo(methodOn(AppointmentController.class).all(null, null, null, null, null)).withRel("appointments"));
+            if (appointment.getStartDate().after(new Date())) {
+                appointmentModel.add(linkTo(methodOn(AppointmentController.class).cancel(null, appointment.getId())).withRel("cancel"));
+                appointmentModel.add(linkTo(methodOn(AppointmentController.class).newAppointment(appointment)).withRel("update"));
+            }
+            models.add(appointmentModel);
+        }
+        return models;
+    }
+}
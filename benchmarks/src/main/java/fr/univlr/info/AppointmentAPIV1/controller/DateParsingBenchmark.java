@@ -0,0 +1,24 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the date filter of GET /api/appointments?date=...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateParsingBenchmark {
+    @Param({"2021-01-13T09:30", "2021-01-13T9:30", "2021-20-27T17:34"})
+    private String date;
+
+    @Benchmark
+    public Object formatAndParseDate() {
+        return AppointmentController.formatAndParseDate(this.date);
+    }
+}
@@ -0,0 +1,129 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepositoryBenchmark;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Load test of the request execution modes, not a JMH benchmark :
+ * {@code java -cp target/benchmarks.jar fr.univlr.info.AppointmentAPIV1.controller.SlowClientsLoadTest [modes] [clients]}
+ * (defaults : platform,async,virtual and 100,1000,5000, raise {@code ulimit -n} first).
+ * <p>
+ * Every slow client sends a batch import whose body arrives one byte every 100 ms, so its request holds a
+ * thread for about two seconds, while a probe times {@code GET /api/doctors} in a loop. With the platform pool
+ * the probe waits as soon as the slow clients outnumber Tomcat's 200 threads, with a virtual thread per request
+ * it doesn't. The async mode doesn't help here : the body is read before the controller hands the work over.
+ */
+public class SlowClientsLoadTest {
+    private static final int BODY_LENGTH = 20;
+    private static final long TRICKLE_MILLIS = 100;
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = args.length > 0 ? args[0].split(",") : new String[]{"platform", "async", "virtual"};
+        int[] clients = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100, 1000, 5000};
+
+        System.out.printf("%-9s %8s %11s %11s %11s %8s %10s%n", "mode", "clients", "probe p50", "probe p99", "probe max", "probes", "completed");
+        for (String mode : modes) {
+            try (ConfigurableApplicationContext context = AppointmentRepositoryBenchmark.start(
+                    "appointment.execution.mode=" + mode,
+                    "server.tomcat.max-connections=20000",
+                    "server.tomcat.accept-count=5000")) {
+                int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                for (int n : clients) {
+                    run(mode, port, n);
+                }
+            }
+        }
+    }
+
+    private static void run(String mode, int port, int clients) throws Exception {
+        byte[] body = ("[" + String.join("", Collections.nCopies(BODY_LENGTH - 2, " ")) + "]").getBytes(US_ASCII);
+        byte[] head = ("POST /api/appointments/batch HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                + "Content-Length: " + body.length + "\r\nConnection: close\r\n\r\n").getBytes(US_ASCII);
+
+        List<Socket> sockets = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Socket socket = new Socket("localhost", port);
+            socket.setSoTimeout((int) TimeUnit.MINUTES.toMillis(1));
+            socket.getOutputStream().write(head);
+            sockets.add(socket);
+        }
+
+        AtomicBoolean trickling = new AtomicBoolean(true);
+        ExecutorService probeThread = Executors.newSingleThreadExecutor();
+        Future<List<Long>> probe = probeThread.submit(() -> probe(port, trickling));
+        try {
+            for (byte b : body) {
+                for (Socket socket : sockets) {
+                    socket.getOutputStream().write(b);
+                }
+                Thread.sleep(TRICKLE_MILLIS);
+            }
+        } finally {
+            trickling.set(false);
+        }
+
+        int completed = 0;
+        for (Socket socket : sockets) {
+            try (Socket s = socket) {
+                String status = new BufferedReader(new InputStreamReader(s.getInputStream(), US_ASCII)).readLine();
+                if (status != null && status.startsWith("HTTP/1.1 200")) completed++;
+            } catch (IOException e) {
+                // timed out or reset, not completed
+            }
+        }
+        List<Long> latencies = probe.get();
+        probeThread.shutdown();
+
+        Collections.sort(latencies);
+        System.out.printf("%-9s %8d %9.1fms %9.1fms %9.1fms %8d %10d%n", mode, clients,
+                percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 1), latencies.size(), completed);
+    }
+
+    // latencies (ns) of the probe requests sent while the slow clients are in progress
+    private static List<Long> probe(int port, AtomicBoolean trickling) throws InterruptedException {
+        HttpClient http = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/doctors"))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        List<Long> latencies = new ArrayList<>();
+        while (trickling.get()) {
+            long start = System.nanoTime();
+            try {
+                http.send(request, HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                // a timeout is still a (very long) latency
+            }
+            latencies.add(System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return Double.NaN;
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+}
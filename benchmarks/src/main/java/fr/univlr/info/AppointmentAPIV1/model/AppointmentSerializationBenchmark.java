@@ -0,0 +1,57 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of appointments, configured like the application (NON_ABSENT inclusion).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentSerializationBenchmark {
+    @Param({"1000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private Appointment appointment;
+    private List<Appointment> appointments;
+
+    @Setup
+    public void setup() {
+        this.writer = Jackson2ObjectMapperBuilder.json()
+                .serializationInclusion(JsonInclude.Include.NON_ABSENT)
+                .build()
+                .writer();
+        long now = System.currentTimeMillis();
+        this.appointments = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            long start = now + TimeUnit.HOURS.toMillis(i);
+            Appointment appt = new Appointment("mjones", new Date(start), new Date(start + TimeUnit.MINUTES.toMillis(30)), "patient" + i);
+            appt.setId((long) i + 1);
+            this.appointments.add(appt);
+        }
+        this.appointment = this.appointments.get(0);
+    }
+
+    @Benchmark
+    public byte[] one() throws JsonProcessingException {
+        return this.writer.writeValueAsBytes(this.appointment);
+    }
+
+    @Benchmark
+    public byte[] list() throws JsonProcessingException {
+        return this.writer.writeValueAsBytes(this.appointments);
+    }
+}
@@ -0,0 +1,80 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Heap footprint of the names, not a JMH benchmark :
+ * {@code java -Xmx2g -cp target/benchmarks.jar fr.univlr.info.AppointmentAPIV1.model.NameFootprint [count]}
+ * (default 1000000).
+ * <p>
+ * Reads {@code count} appointments (3 doctors, 1000 patients) from JSON twice, with plain String properties
+ * then with the canonical names of {@link NameDictionary}, and prints the String and byte[] lines of the class
+ * histogram of the live objects along with the heap used. With the dictionary, about 2 Strings per appointment
+ * are gone.
+ */
+public class NameFootprint {
+    private static final String[] DOCTORS = {"mjones", "jsmith", "jdoe"};
+    private static final int PATIENTS = 1000;
+    // "num: instances bytes class-name (module)"
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile(".*\\s(java\\.lang\\.String|\\[B)(\\s.*)?");
+
+    // the annotations of Appointment, without the canonical names
+    abstract static class PlainNames {
+        @JsonDeserialize(using = StringDeserializer.class)
+        String doctor;
+        @JsonDeserialize(using = StringDeserializer.class)
+        String patient;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long start = System.currentTimeMillis();
+        List<byte[]> json = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long from = start + i * 1_800_000L;
+            json.add(("{\"doctor\":\"" + DOCTORS[i % DOCTORS.length] + "\",\"startDate\":" + from + ",\"endDate\":" + (from + 1_800_000L)
+                    + ",\"patient\":\"patient" + (i % PATIENTS) + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+
+        // known doctors, as once the application has read the doctor table
+        for (String doctor : DOCTORS) {
+            NameDictionary.DOCTORS.canonical(doctor);
+        }
+        measure("plain", new ObjectMapper().addMixIn(Appointment.class, PlainNames.class), json);
+        measure("canonical", new ObjectMapper(), json);
+    }
+
+    private static void measure(String label, ObjectMapper mapper, List<byte[]> json) throws Exception {
+        List<Appointment> appts = new ArrayList<>(json.size());
+        for (byte[] item : json) {
+            appts.add(mapper.readValue(item, Appointment.class));
+        }
+        System.out.printf("%s : %d appointments, %d MB used%n", label, appts.size(), usedMegabytes());
+        for (String line : histogram().split("\n")) {
+            if (HISTOGRAM_LINE.matcher(line).matches()) System.out.println(line);
+        }
+        appts.clear();
+    }
+
+    // the class histogram triggers a full GC, only the live objects are counted
+    private static String histogram() throws Exception {
+        return (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{new String[0]}, new String[]{String[].class.getName()});
+    }
+
+    private static long usedMegabytes() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+    }
+}
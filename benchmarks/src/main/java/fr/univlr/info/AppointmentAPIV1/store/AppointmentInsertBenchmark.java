@@ -0,0 +1,55 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput (appointments per second) depending on the number of ids handed out per sequence call :
+ * 1 is the former behaviour (one sequence round trip per insert), 50 is the default of PooledSequenceGenerator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@OperationsPerInvocation(AppointmentInsertBenchmark.BATCH)
+public class AppointmentInsertBenchmark {
+    static final int BATCH = 1000;
+
+    @Param({"1", "50"})
+    private int allocationSize;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentRepository repository;
+    private long next;
+
+    @Setup
+    public void setup() {
+        this.context = AppointmentRepositoryBenchmark.start(
+                "spring.jpa.properties." + PooledSequenceGenerator.INCREMENT_SIZE_SETTING + "=" + this.allocationSize);
+        this.repository = this.context.getBean(AppointmentRepository.class);
+        this.next = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public List<Appointment> saveAll() {
+        List<Appointment> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(new Appointment("mjones", new Date(this.next), new Date(this.next + AppointmentRepositoryBenchmark.SLOT), "patient" + i));
+            this.next += AppointmentRepositoryBenchmark.SLOT;
+        }
+        return this.repository.saveAll(batch);
+    }
+}
@@ -0,0 +1,82 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-doctor overlap lookup against the in-memory H2 database of the application, seeded with {@code rows} appointments.
+ * Thanks to idx_appointment_doctor_range the latency must stay flat from 10k to 1M rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AppointmentRepositoryBenchmark {
+    static final String[] DOCTORS = {"mjones", "jsmith", "jdoe"};
+    static final long SLOT = TimeUnit.MINUTES.toMillis(30);
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentRepository repository;
+    private long origin;
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        List<String> all = new ArrayList<>();
+        all.add("server.port=0");
+        all.add("spring.main.banner-mode=off");
+        all.add("logging.level.root=warn");
+        for (String property : properties) all.add(property);
+        return new SpringApplicationBuilder(AppointmentApiApplication.class)
+                .properties(all.toArray(new String[0]))
+                .run();
+    }
+
+    // back to back appointments, spread over the doctors
+    static void seed(AppointmentRepository repository, long origin, int rows) {
+        List<Appointment> batch = new ArrayList<>(1000);
+        for (int i = 0; i < rows; i++) {
+            long start = origin + (i / DOCTORS.length) * SLOT;
+            batch.add(new Appointment(DOCTORS[i % DOCTORS.length], new Date(start), new Date(start + SLOT), "patient" + i));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+    }
+
+    @Setup
+    public void setup() {
+        this.context = start();
+        this.repository = this.context.getBean(AppointmentRepository.class);
+        this.origin = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        seed(this.repository, this.origin, this.rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public List<Appointment> findByDoctorAndRange() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = this.origin + random.nextInt(this.rows / DOCTORS.length) * SLOT + SLOT / 2;
+        return this.repository.findByDoctorAndRange(DOCTORS[random.nextInt(DOCTORS.length)],
+                AppointmentDates.toLocalDateTime(new Date(start)), AppointmentDates.toLocalDateTime(new Date(start + SLOT)));
+    }
+}
@@ -0,0 +1,58 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Free-slot search (GET /api/doctors/{name}/availability) and overlap check against the schedule of a
+ * doctor with {@code booked} appointments, half an hour each with a random gap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+    private static final long SLOT = TimeUnit.MINUTES.toMillis(30);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    @Param({"10000", "100000"})
+    private int booked;
+
+    private final AppointmentIntervalIndex index = new AppointmentIntervalIndex();
+    private long origin, horizon;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.origin = System.currentTimeMillis();
+        long start = this.origin;
+        for (int i = 0; i < this.booked; i++) {
+            start += SLOT + random.nextInt(4) * SLOT;
+            this.index.add(i, "jsmith", toDate(start), toDate(start + SLOT));
+        }
+        this.horizon = start - WEEK;
+    }
+
+    private static LocalDateTime toDate(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    @Benchmark
+    public long[] nextWeek() {
+        long from = this.origin + ThreadLocalRandom.current().nextLong(this.horizon - this.origin);
+        return this.index.freeIntervals("jsmith", from, from + WEEK, SLOT);
+    }
+
+    @Benchmark
+    public boolean overlaps() {
+        long from = this.origin + ThreadLocalRandom.current().nextLong(this.horizon - this.origin);
+        return this.index.overlaps("jsmith", toDate(from), toDate(from + SLOT));
+    }
+}
@@ -0,0 +1,79 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Heap footprint of the columnar store and its conflict index, not a JMH benchmark :
+ * {@code java -Xmx2g -XX:MaxDirectMemorySize=1g -cp target/benchmarks.jar fr.univlr.info.AppointmentAPIV1.store.ColumnarFootprint [rows]}
+ * (default 10000000).
+ * <p>
+ * Loads {@code rows} appointments (3 doctors, 1000 patients) and prints the heap and direct memory used per row,
+ * along with the largest lines of the class histogram of the live objects : the rows are off-heap (40 bytes), the
+ * conflict index only takes primitive arrays (about 90 bytes per row with 2M rows, growth slack included), there is
+ * no object per appointment left on the heap.
+ */
+public class ColumnarFootprint {
+    private static final String[] DOCTORS = {"mjones", "jsmith", "jdoe"};
+    private static final int PATIENTS = 1000;
+    private static final int CHUNK = 10_000;
+    // "num: instances bytes class-name (module)"
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile("\\s*\\d+:\\s+\\d+\\s+\\d+\\s+.*");
+    private static final int HISTOGRAM_LINES = 10;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        long heapBefore = usedHeap(), directBefore = usedDirect();
+
+        AppointmentIntervalIndex index = new AppointmentIntervalIndex();
+        ColumnarAppointmentStore store = new ColumnarAppointmentStore(index, new EntityChangeCounter(),
+                new StaticListableBeanFactory().getBeanProvider(WriteAheadLog.class));
+        LocalDateTime origin = LocalDateTime.now().plusDays(1).withNano(0);
+        for (int from = 0; from < rows; from += CHUNK) {
+            List<Appointment> chunk = new ArrayList<>(CHUNK);
+            for (int i = from; i < Math.min(from + CHUNK, rows); i++) {
+                LocalDateTime start = origin.plusMinutes(30L * (i / DOCTORS.length));
+                chunk.add(new Appointment(DOCTORS[i % DOCTORS.length], start, start.plusMinutes(30), "patient" + (i % PATIENTS)));
+            }
+            store.saveAll(chunk);
+        }
+
+        long heap = usedHeap() - heapBefore, direct = usedDirect() - directBefore;
+        System.out.printf("%d rows : heap %d MB (%d bytes per row), direct %d MB (%d bytes per row)%n",
+                rows, heap >> 20, heap / rows, direct >> 20, direct / rows);
+        int printed = 0;
+        for (String line : histogram().split("\n")) {
+            if (HISTOGRAM_LINE.matcher(line).matches() && printed++ < HISTOGRAM_LINES) System.out.println(line);
+        }
+        // keeps the store reachable up to the measure
+        System.out.println(store.findById(1L).isPresent());
+    }
+
+    // the class histogram triggers a full GC, only the live objects are counted
+    private static String histogram() throws Exception {
+        return (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{new String[0]}, new String[]{String[].class.getName()});
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,50 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full listing read as managed entities (what {@code GET /api/appointments} used to do) against the projection
+ * it reads now. Run with {@code -prof gc} : the projection doesn't pay for the entity instances and their
+ * persistence context entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ListingProjectionBenchmark {
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentRepository repository;
+
+    @Setup
+    public void setup() {
+        this.context = AppointmentRepositoryBenchmark.start();
+        this.repository = this.context.getBean(AppointmentRepository.class);
+        AppointmentRepositoryBenchmark.seed(this.repository, System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1), this.rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public List<Appointment> entities() {
+        return this.repository.findAll();
+    }
+
+    @Benchmark
+    public List<AppointmentSummary> summaries() {
+        return this.repository.findAllSummaries();
+    }
+}
@@ -2,12 +2,37 @@ package fr.univlr.info.AppointmentAPIV1;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
 
 @SpringBootApplication
+@EnableCaching
 public class AppointmentApiApplication {
+	// startup steps kept for /actuator/startup (exposed by the fast-start profile)
+	static final int STARTUP_STEPS = 4096;
+	static final String FAST_START_PROFILE = "fast-start";
 
 	public static void main(String[] args) {
-		SpringApplication.run(AppointmentApiApplication.class, args);
+		SpringApplication application = new SpringApplication(AppointmentApiApplication.class);
+		// the steps are only recorded when they can be read, the recording isn't free
+		if (activatesFastStart(args)) application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+		ConfigurableApplicationContext context = application.run(args);
+		// training run of the AppCDS archive (mvn -Pfast-start package) : the classes loaded are dumped at exit
+		if (context.getEnvironment().getProperty("appointment.startup.exit", Boolean.class, false)) {
+			System.exit(SpringApplication.exit(context));
+		}
+	}
+
+	// spring.profiles.active as given to the application (arguments, system properties, environment variables),
+	// before the context reads it
+	static boolean activatesFastStart(String[] args) {
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+		return environment.acceptsProfiles(Profiles.of(FAST_START_PROFILE));
 	}
 
 }
@@ -0,0 +1,91 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentIntervalIndex;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk creation of appointments : every item is checked like a single POST (coherent dates, existing
+ * doctor, no conflict with the stored appointments nor with the previous items of the batch), then all
+ * the accepted ones are inserted in one transaction (by JDBC batches with the JPA store).
+ */
+@Component
+class AppointmentBatchImporter {
+    private final AppointmentStore store;
+    private final DoctorService doctorService;
+    private final AppointmentIntervalIndex apptIndex;
+    private final TransactionTemplate tx;
+    private final DoctorLocks locks;
+    private final AppointmentDateValidator validator = new AppointmentDateValidator();
+
+    AppointmentBatchImporter(AppointmentStore store, DoctorService doctorService, AppointmentIntervalIndex apptIndex,
+                             PlatformTransactionManager txManager, DoctorLocks locks) {
+        this.store = store;
+        this.doctorService = doctorService;
+        this.apptIndex = apptIndex;
+        this.tx = new TransactionTemplate(txManager);
+        this.locks = locks;
+    }
+
+    // the doctors of the batch are locked from the checks to the commit, like a single POST
+    List<BatchItemResult> importAll(List<Appointment> appts) {
+        Set<String> doctorNames = new HashSet<>();
+        for (Appointment appt : appts) {
+            if (appt != null) doctorNames.add(appt.getDoctor());
+        }
+        return this.locks.withLocks(doctorNames, () -> importLocked(appts));
+    }
+
+    private List<BatchItemResult> importLocked(List<Appointment> appts) {
+        BatchItemResult[] results = new BatchItemResult[appts.size()];
+        AppointmentIntervalIndex batchIndex = new AppointmentIntervalIndex();
+        Map<String, Doctor> doctors = new HashMap<>();
+        List<Appointment> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+
+        for (int i = 0; i < appts.size(); i++) {
+            Appointment appt = appts.get(i);
+            if (appt == null || !this.validator.isValid(appt, null)) {
+                results[i] = BatchItemResult.rejected(i, HttpStatus.NOT_ACCEPTABLE, "Incoherent start and end dates");
+                continue;
+            }
+            Doctor doctor = doctors.computeIfAbsent(appt.getDoctor(), name -> this.doctorService.find(name).orElse(null));
+            if (doctor == null) {
+                results[i] = BatchItemResult.rejected(i, HttpStatus.NOT_FOUND, "Could not find doctor " + appt.getDoctor());
+                continue;
+            }
+            if (this.apptIndex.overlaps(appt.getDoctor(), appt.getStart(), appt.getEnd())
+                    || batchIndex.overlaps(appt.getDoctor(), appt.getStart(), appt.getEnd())) {
+                results[i] = BatchItemResult.rejected(i, HttpStatus.CONFLICT, "Conflicting appointment");
+                continue;
+            }
+            appt.setId(null);
+            appt.setVersion(null);
+            appt.setDoctorObj(doctor);
+            batchIndex.add(i, appt.getDoctor(), appt.getStart(), appt.getEnd());
+            accepted.add(appt);
+            acceptedIndexes.add(i);
+        }
+
+        // the conflict index only gets the rows once committed, a failed batch leaves it untouched
+        this.tx.executeWithoutResult(status -> this.store.saveAll(accepted));
+
+        for (int k = 0; k < accepted.size(); k++) {
+            results[acceptedIndexes.get(k)] = BatchItemResult.created(acceptedIndexes.get(k), accepted.get(k).getId());
+        }
+        return Arrays.asList(results);
+    }
+}
@@ -0,0 +1,60 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+
+import java.util.Locale;
+
+/**
+ * Published by {@link AppointmentService} once a change is committed, pushed to the SSE subscribers
+ * by {@link AppointmentEventFeed}.
+ */
+public class AppointmentChangedEvent {
+    public enum Type {
+        CREATED, UPDATED, CANCELLED, DELETED,
+        // every appointment was deleted, there is no appointment attached
+        CLEARED,
+        // a batch was imported, one event for all the appointments created (their count, no appointment attached)
+        IMPORTED;
+
+        // SSE event name, the same whatever the default locale (in Turkish, IMPORTED would be "ımported")
+        private final String eventName = name().toLowerCase(Locale.ROOT);
+
+        String eventName() {
+            return this.eventName;
+        }
+    }
+
+    private final Type type;
+    private final Appointment appointment;
+    private final int count;
+
+    public AppointmentChangedEvent(Type type, Appointment appointment) {
+        this.type = type;
+        this.appointment = appointment;
+        this.count = appointment != null ? 1 : 0;
+    }
+
+    // an IMPORTED event
+    public AppointmentChangedEvent(int count) {
+        this.type = Type.IMPORTED;
+        this.appointment = null;
+        this.count = count;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Appointment getAppointment() {
+        return appointment;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // a null doctor means every doctor, CLEARED and IMPORTED concern everybody
+    boolean concerns(String doctor) {
+        return doctor == null || this.appointment == null || doctor.equals(this.appointment.getDoctor());
+    }
+}
@@ -0,0 +1,17 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ControllerAdvice
+public class AppointmentConflictAdvice {
+    @ResponseBody
+    @ExceptionHandler(AppointmentConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    String appointmentConflictHandler(AppointmentConflictException ex) {
+        return ex.getMessage();
+    }
+}
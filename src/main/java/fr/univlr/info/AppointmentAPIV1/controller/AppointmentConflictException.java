@@ -0,0 +1,7 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+public class AppointmentConflictException extends RuntimeException {
+    public AppointmentConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,102 +1,239 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
-import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
-import org.springframework.hateoas.CollectionModel;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import fr.univlr.info.AppointmentAPIV1.store.EntityChangeCounter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
 import javax.validation.Valid;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 @RestController
+@Profile("!reactive")
 @RequestMapping(path = "/api")
 public class AppointmentController {
-    private final AppointmentRepository apptRepository;
+    // also the paging of the reactive variant
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_UPDATE_ATTEMPTS = 3;
+
+    private final AppointmentService apptService;
     private final AppointmentModelAssembler apptAssembler;
+    private final ObjectWriter apptWriter;
+    private final ObjectReader apptReader;
+    private final RequestExecutor requestExecutor;
+    private final AppointmentEventFeed eventFeed;
+    private final EntityChangeCounter changes;
+    private final LinkTemplates links;
 
-    public AppointmentController(AppointmentRepository apptRepository, AppointmentModelAssembler apptAssembler) {
-        this.apptRepository = apptRepository;
+    public AppointmentController(AppointmentService apptService, AppointmentModelAssembler apptAssembler, ObjectMapper objectMapper,
+                                 RequestExecutor requestExecutor, AppointmentEventFeed eventFeed, EntityChangeCounter changes,
+                                 LinkTemplates links) {
+        this.apptService = apptService;
         this.apptAssembler = apptAssembler;
+        this.apptWriter = objectMapper.writerFor(AppointmentSummary.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.apptReader = objectMapper.readerFor(Appointment.class);
+        this.requestExecutor = requestExecutor;
+        this.eventFeed = eventFeed;
+        this.changes = changes;
+        this.links = links;
     }
 
     @GetMapping("/appointments")
-    ResponseEntity<?> all(@RequestHeader(value="Accept", required=false) String halContent ,@RequestParam(required = false) String date) {
-        Date targetDate = date != null ? formatAndParseDate(date) : null;
-        if (date != null && targetDate == null) return ResponseEntity.badRequest().build();
-        List<Appointment> appts;
-        if (date != null) {
-            appts = this.apptRepository.retrieveAppointmentsByDate(targetDate);
-        } else {
-            appts = this.apptRepository.findAll();
-        }
+    CompletableFuture<ResponseEntity<?>> all(@RequestHeader(value="Accept", required=false) String halContent,
+                                             @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch,
+                                             @RequestParam(required = false) String date,
+                                             @RequestParam(required = false) Long after, @RequestParam(required = false) Integer limit) {
+        boolean hal = halContent != null && MediaTypes.HAL_JSON_VALUE.equals(halContent);
+        LocalDateTime targetDate = date != null ? formatAndParseDate(date) : null;
+        if (date != null && targetDate == null) return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        boolean paged = after != null || limit != null;
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+
+        // the listing only changes with the table (read before the query, a change in between can only refresh it)
+        // and the parameters, as parsed
+        String tag = this.changes.version(Appointment.class)
+                + "-" + (targetDate != null ? AppointmentDates.toEpochMillis(targetDate) : "")
+                + (paged ? "-" + (after != null ? after : 0L) + "-" + pageSize : "");
+        if (!hal && ETags.noneMatchFails(ifNoneMatch, ETags.of(tag, false)))
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ETags.of(tag, false)).build());
+
+        return this.requestExecutor.submit(() -> {
+            // one query, whatever the representation asked for, read as projections
+            List<AppointmentSummary> appts = paged
+                    ? this.apptService.page(targetDate, after != null ? after : 0L, pageSize)
+                    : this.apptService.list(targetDate);
+
+            // the cancel and update links of a listed appointment go away once it has started (see one()), so the
+            // HAL tag also holds the next start, and is only known after the query
+            String etag = ETags.of(hal ? tag + nextStart(appts) : tag, hal);
+            if (hal && ETags.noneMatchFails(ifNoneMatch, etag)) return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
 
-        if(halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent)) {
-            List<EntityModel<Appointment>> appointmentsWithHallTemplate = this.apptRepository.findAll().stream().map(apptAssembler::toModel).collect(Collectors.toList());
-            return ResponseEntity.ok(CollectionModel.of(appointmentsWithHallTemplate));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+            if (paged && appts.size() == pageSize) {
+                Long lastId = appts.get(appts.size() - 1).getId();
+                response.header(HttpHeaders.LINK,
+                        Link.of(this.links.appointmentsPage(this.links.baseUri(), date, lastId, pageSize), IanaLinkRelations.NEXT).toString());
+            }
+            if(hal) {
+                return response.body(this.apptAssembler.toSummaryModels(appts));
+            }
+            return response.body(appts);
+        });
+    }
+
+    // start of the next listed appointment to begin (nothing if they all have)
+    private static String nextStart(List<AppointmentSummary> appts) {
+        LocalDateTime now = LocalDateTime.now(), next = null;
+        for (AppointmentSummary appt : appts) {
+            if (appt.getStart().isAfter(now) && (next == null || appt.getStart().isBefore(next))) next = appt.getStart();
         }
-        return new ResponseEntity<>(appts, HttpStatus.OK);
+        return next != null ? "-" + AppointmentDates.toEpochMillis(next) : "";
+    }
+
+    // streaming mode (?stream) : rows are written as NDJSON while the cursor is read, as projections nothing
+    // stays in the persistence context, so the memory used doesn't depend on the table size
+    @GetMapping(value = "/appointments", params = "stream")
+    ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) String date) {
+        LocalDateTime targetDate = date != null ? formatAndParseDate(date) : null;
+        if (date != null && targetDate == null) return ResponseEntity.badRequest().build();
+        StreamingResponseBody body = out -> this.apptService.forEach(targetDate, appt -> {
+            try {
+                this.apptWriter.writeValue(out, appt);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @PostMapping("/appointments")
     ResponseEntity<?> newAppointment(@Valid @RequestBody Appointment appt) {
-        // here i used a custom repository method that i have created to get appointments between two dates
-        List<Appointment> alreadyExistsAppointmentsBetweenStartAndEndDate = this.apptRepository.findAppointmentByDate(appt.getStartDate(), appt.getEndDate());
-        // Now i check if there is an appointment between the start and the end date that was send in the payload; If yes i return an http conflict
-        if (alreadyExistsAppointmentsBetweenStartAndEndDate.size() > 0)
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        EntityModel<Appointment> entityModel = this.apptAssembler.toModel(this.apptRepository.save(appt));
+        // if the doctor already has an appointment between the start and the end date, i return an http conflict
+        Appointment saved = this.apptService.book(appt);
+        EntityModel<Appointment> entityModel = this.apptAssembler.toModel(saved);
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri()).body(entityModel);
 
     }
 
-    @GetMapping("/appointments/{id}")
-    EntityModel<Appointment> one(@RequestHeader(value="Accept", required=false) String halContent, @PathVariable Long id) {
+    // SSE feed of the changes, for the clients which used to poll the listing
+    // (one doctor with ?doctor=, a reconnecting EventSource resumes after its Last-Event-ID)
+    @GetMapping(value = "/appointments/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter changes(@RequestParam(required = false) String doctor,
+                       @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return this.eventFeed.subscribe(doctor, lastEventId);
+    }
 
-        Appointment appointment = this.apptRepository.findById(id) //
-                .orElseThrow(() -> new AppointmentNotFoundException(id));
+    // bulk import, accepts a JSON array or NDJSON (one appointment per line) and answers the outcome of each item
+    @PostMapping(value = "/appointments/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<List<BatchItemResult>> importAppointments(@RequestBody List<Appointment> appts) {
+        return ResponseEntity.ok(this.apptService.importAll(appts));
+    }
 
-        return this.apptAssembler.toModel(appointment);
+    @PostMapping(value = "/appointments/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<List<BatchItemResult>> importAppointments(InputStream body) throws IOException {
+        List<Appointment> appts;
+        try (MappingIterator<Appointment> lines = this.apptReader.readValues(body)) {
+            appts = lines.readAll();
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(this.apptService.importAll(appts));
+    }
+
+    @GetMapping("/appointments/{id}")
+    CompletableFuture<ResponseEntity<EntityModel<Appointment>>> one(@RequestHeader(value="Accept", required=false) String halContent,
+                                                                    @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch,
+                                                                    @PathVariable Long id) {
+        boolean hal = halContent != null && MediaTypes.HAL_JSON_VALUE.equals(halContent);
+        return this.requestExecutor.submit(() -> {
+            Appointment appointment = this.apptService.find(id) //
+                    .orElseThrow(() -> new AppointmentNotFoundException(id));
+
+            // the cancel and update links go away once the appointment has started, so does the tag
+            boolean started = !appointment.getStart().isAfter(LocalDateTime.now());
+            String etag = ETags.of(appointment.getVersion() + (started ? ".started" : ""), hal);
+            if (ETags.noneMatchFails(ifNoneMatch, etag)) return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(this.apptAssembler.toModel(appointment));
+        });
     }
 
     @PutMapping("/appointments/{id}")
-    ResponseEntity<?> updateAppoint(@RequestBody Appointment apptToBeUpdated, @PathVariable Long id) {
-        Appointment updatedEmployee = this.apptRepository.findById(id) //
-                .map(appointment -> {
-                    appointment.setDoctor(apptToBeUpdated.getDoctor());
-                    appointment.setPatient(apptToBeUpdated.getPatient());
-                    appointment.setStartDate(apptToBeUpdated.getStartDate());
-                    appointment.setEndDate(apptToBeUpdated.getEndDate());
-                    return this.apptRepository.save(appointment);
-                }) //
-                .orElseGet(() -> {
-                    apptToBeUpdated.setId(id);
-                    return this.apptRepository.save(apptToBeUpdated);
-                });
-        EntityModel<Appointment> entityModel = this.apptAssembler.toModel(updatedEmployee);
-        return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri()).body(entityModel);
+    ResponseEntity<?> updateAppoint(@RequestBody Appointment apptToBeUpdated, @PathVariable Long id,
+                                    @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        // If-Match : the update only applies to the version the client has seen (checked again by Hibernate when flushing)
+        Long expectedVersion;
+        try {
+            expectedVersion = ETags.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        for (int attempt = 1; ; attempt++) {
+            Optional<Appointment> current = this.apptService.find(id);
+            if (ifMatch != null && (!current.isPresent()
+                    || (expectedVersion != null && !expectedVersion.equals(current.get().getVersion()))))
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+
+            Appointment updatedEmployee;
+            try {
+                updatedEmployee = current //
+                        .map(appointment -> this.apptService.replace(id, apptToBeUpdated,
+                                expectedVersion != null ? expectedVersion : appointment.getVersion())) //
+                        .orElseGet(() -> this.apptService.insert(apptToBeUpdated));
+            } catch (OptimisticLockingFailureException e) {
+                // changed by someone else since it was read : with If-Match the client decides what to do,
+                // otherwise the update is applied again on the new version
+                if (ifMatch != null) return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+                if (attempt == MAX_UPDATE_ATTEMPTS) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+                backOff(attempt);
+                continue;
+            }
+            EntityModel<Appointment> entityModel = this.apptAssembler.toModel(updatedEmployee);
+            return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri()).body(entityModel);
+        }
+    }
+
+    // a few random milliseconds, growing with the attempts, so that the competing writers don't collide again
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @DeleteMapping("/appointments/{id}/cancel")
     ResponseEntity<?>cancel(@RequestHeader(value="Accept", required=false) String halContent,@PathVariable Long id) {
-
-        Appointment appointment = apptRepository.findById(id).orElseThrow(() -> new AppointmentNotFoundException(id));
-       if(appointment.getStartDate().before(new Date())){
-           return ResponseEntity.status(HttpStatus.CONFLICT).build();
-       }
-        this.apptRepository.deleteById(id);
+        this.apptService.cancel(id);
         return ResponseEntity.status(HttpStatus.OK).build();
 
     }
@@ -104,23 +241,16 @@ public class AppointmentController {
     @DeleteMapping("/appointments/{id}")
     void deleteAppointment(@PathVariable Long id) {
         // first i verify if the target appointment which is tried to delete exist, if not i return a not found execption
-        this.apptRepository.findById(id).orElseThrow(() -> new AppointmentNotFoundException(id));
-        this.apptRepository.deleteById(id);
+        this.apptService.delete(id);
     }
 
     @DeleteMapping("/appointments")
     void deleteAllAppointments() {
-        this.apptRepository.deleteAll();
+        this.apptService.deleteAll();
     }
 
-    public static java.util.Date formatAndParseDate(String dateToParse) {
-        try {
-            DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
-            formatter.setLenient(false);
-            return formatter.parse(dateToParse);
-        } catch (ParseException e) {
-            return null;
-        }
+    public static LocalDateTime formatAndParseDate(String dateToParse) {
+        return AppointmentDates.parse(dateToParse);
     }
 
 
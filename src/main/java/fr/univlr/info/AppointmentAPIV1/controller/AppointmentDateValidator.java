@@ -12,8 +12,8 @@ public class AppointmentDateValidator
     @Override
     public boolean isValid(Appointment app,
                            ConstraintValidatorContext ctxt) {
-        if(app.getStartDate()!= null) {
-            return app.getStartDate().before(app.getEndDate());
+        if(app.getStart()!= null && app.getEnd() != null) {
+            return app.getStart().isBefore(app.getEnd());
         } else{
             return false ;
         }
@@ -0,0 +1,199 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server-Sent Events feed of the appointment changes ({@code GET /api/appointments/stream}).
+ * <p>
+ * Every change gets an increasing event id and is kept in a replay ring buffer, a client reconnecting
+ * with {@code Last-Event-ID} first receives what it missed (or a {@code reset} event if it is older than
+ * the ring buffer, it must then reload the listing). Publishing never blocks on a client : each subscriber
+ * has a bounded queue drained by a small pool of sender threads, when a queue is full the oldest events are
+ * replaced by a {@code reset} event or the subscriber is disconnected ({@code appointment.events.overflow}).
+ * A batch import is a single {@code imported} event (the number of appointments created), the clients reload.
+ */
+@Component
+public class AppointmentEventFeed implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentEventFeed.class);
+
+    enum Overflow { DROP_OLDEST, DISCONNECT }
+
+    private final int replaySize;
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final ExecutorService senders;
+    private final Counter dropped;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // guarded by this
+    private final Deque<Entry> replay = new ArrayDeque<>();
+    private long lastEventId;
+
+    AppointmentEventFeed(@Value("${appointment.events.replay-size:512}") int replaySize,
+                         @Value("${appointment.events.buffer-size:1024}") int bufferSize,
+                         @Value("${appointment.events.overflow:drop-oldest}") String overflow,
+                         @Value("${appointment.events.senders:4}") int senders,
+                         MeterRegistry registry) {
+        this.replaySize = replaySize;
+        this.bufferSize = bufferSize;
+        this.overflow = Overflow.valueOf(overflow.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        this.senders = Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("appt-sse-"));
+        this.dropped = Counter.builder("appointments.feed.dropped")
+                .description("Events dropped because a subscriber didn't keep up")
+                .register(registry);
+        Gauge.builder("appointments.feed.subscribers", this.subscribers, Set::size).register(registry);
+    }
+
+    @EventListener
+    public synchronized void onChange(AppointmentChangedEvent event) {
+        Entry entry = new Entry(++this.lastEventId, event);
+        if (this.replay.size() == this.replaySize) this.replay.pollFirst();
+        this.replay.addLast(entry);
+        for (Subscriber subscriber : this.subscribers) {
+            subscriber.offer(entry);
+        }
+    }
+
+    /**
+     * Opens a feed of the changes of one doctor (every doctor if null), resuming after lastEventId if not null.
+     */
+    public SseEmitter subscribe(String doctor, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter();
+        Subscriber subscriber = new Subscriber(emitter, doctor);
+        emitter.onCompletion(() -> this.subscribers.remove(subscriber));
+        emitter.onError(e -> this.subscribers.remove(subscriber));
+        synchronized (this) {
+            // replay and registration under the publishing lock : no event is missed nor sent twice
+            if (lastEventId != null) {
+                Entry oldest = this.replay.peekFirst();
+                boolean unknown = lastEventId > this.lastEventId; // issued before a restart
+                boolean evicted = lastEventId < this.lastEventId && (oldest == null || oldest.id > lastEventId + 1);
+                if (unknown || evicted) {
+                    subscriber.offer(Entry.RESET);
+                }
+                for (Entry entry : this.replay) {
+                    if (entry.id > lastEventId) subscriber.offer(entry);
+                }
+            }
+            this.subscribers.add(subscriber);
+        }
+        log.debug("feed.subscribe doctor={} lastEventId={} subscribers={}", doctor, lastEventId, this.subscribers.size());
+        return emitter;
+    }
+
+    @Override
+    public void destroy() {
+        this.senders.shutdownNow();
+    }
+
+    private static final class Entry {
+        // tells the client to reload, the events it missed are no longer in the ring buffer
+        static final Entry RESET = new Entry(-1, null);
+
+        final long id;
+        final AppointmentChangedEvent event;
+
+        Entry(long id, AppointmentChangedEvent event) {
+            this.id = id;
+            this.event = event;
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (this.event == null) return SseEmitter.event().name("reset").data(Collections.emptyMap(), MediaType.APPLICATION_JSON);
+            Object data = this.event.getAppointment() != null ? this.event.getAppointment()
+                    : this.event.getType() == AppointmentChangedEvent.Type.IMPORTED ? Collections.singletonMap("count", this.event.getCount())
+                    : Collections.emptyMap();
+            return SseEmitter.event()
+                    .id(String.valueOf(this.id))
+                    .name(this.event.getType().eventName())
+                    .data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final String doctor;
+        // guarded by this
+        private final Deque<Entry> queue = new ArrayDeque<>();
+        private boolean scheduled, disconnected;
+
+        Subscriber(SseEmitter emitter, String doctor) {
+            this.emitter = emitter;
+            this.doctor = doctor;
+        }
+
+        // called with the feed lock held, must not block
+        synchronized void offer(Entry entry) {
+            if (this.disconnected || (entry.event != null && !entry.event.concerns(this.doctor))) return;
+            if (this.queue.size() == bufferSize) {
+                if (overflow == Overflow.DISCONNECT) {
+                    // the sender completes the emitter, it may be busy writing to this client
+                    dropped.increment();
+                    this.disconnected = true;
+                    this.queue.clear();
+                    subscribers.remove(this);
+                } else {
+                    // the client misses events, it is told to reload before the ones left (a single reset, first)
+                    if (this.queue.pollFirst() != Entry.RESET) dropped.increment();
+                    if (this.queue.pollFirst() != null) dropped.increment();
+                    this.queue.addFirst(Entry.RESET);
+                }
+            }
+            if (!this.disconnected) this.queue.addLast(entry);
+            if (!this.scheduled) {
+                this.scheduled = true;
+                senders.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Entry entry;
+                synchronized (this) {
+                    entry = this.queue.pollFirst();
+                    if (entry == null) {
+                        this.scheduled = false;
+                        if (this.disconnected) break;
+                        return;
+                    }
+                }
+                try {
+                    this.emitter.send(entry.toSse());
+                } catch (IOException | IllegalStateException e) {
+                    // client gone or emitter already completed
+                    subscribers.remove(this);
+                    synchronized (this) {
+                        this.disconnected = true;
+                        this.queue.clear();
+                        this.scheduled = false;
+                    }
+                    return;
+                }
+            }
+            log.debug("feed.disconnect doctor={} reason=overflow", this.doctor);
+            this.emitter.complete();
+        }
+    }
+}
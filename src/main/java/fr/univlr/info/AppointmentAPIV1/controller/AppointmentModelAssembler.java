@@ -1,48 +1,54 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
-import java.util.Date;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 class AppointmentModelAssembler implements RepresentationModelAssembler<Appointment, EntityModel<Appointment>>{
+    private final LinkTemplates links;
+
+    AppointmentModelAssembler(LinkTemplates links) {
+        this.links = links;
+    }
+
     @Override
     public EntityModel<Appointment> toModel(Appointment appointment) {
+        return withLinks(EntityModel.of(appointment), appointment.getId(), appointment.getStart());
+    }
+
+    // same links for the projections of the listings
+    public EntityModel<AppointmentSummary> toModel(AppointmentSummary appointment) {
+        return withLinks(EntityModel.of(appointment), appointment.getId(), appointment.getStart());
+    }
 
-        EntityModel<Appointment> appointmentModel = EntityModel.of(appointment, //
-                linkTo(methodOn(AppointmentController.class).one(null,appointment.getId())).withSelfRel(),
+    public CollectionModel<EntityModel<AppointmentSummary>> toSummaryModels(List<AppointmentSummary> appointments) {
+        return CollectionModel.of(appointments.stream().map(appointment -> toModel(appointment)).collect(Collectors.toList()));
+    }
 
-                linkTo(methodOn(AppointmentController.class).all(null,null)).withRel("appointments")
-                );
-        if(appointment.getStartDate().after(new Date())){
-            appointmentModel.add(linkTo(methodOn(AppointmentController.class).cancel(null,appointment.getId())).withRel("cancel"));
-            appointmentModel.add(linkTo(methodOn(AppointmentController.class).newAppointment(appointment)).withRel("update"));
+    private <T> EntityModel<T> withLinks(EntityModel<T> appointmentModel, Long id, LocalDateTime start) {
+        String baseUri = this.links.baseUri();
+        appointmentModel.add(Link.of(this.links.appointment(baseUri, id)),
+                Link.of(this.links.appointments(baseUri), "appointments"));
+        if(start.isAfter(LocalDateTime.now())){
+            appointmentModel.add(Link.of(this.links.cancel(baseUri, id), "cancel"));
+            appointmentModel.add(Link.of(this.links.newAppointment(baseUri), "update"));
         }
         return appointmentModel;
     }
 
-    public EntityModel<Appointment> toModel2(Appointment appointment) {
-
-        return new EntityModel(appointment, //
-                //linkTo(methodOn(AppointmentController.class).one(null,appointment.getId())).withSelfRel(),
+    public EntityModel<AppointmentSummary> toModel2(AppointmentSummary appointment) {
 
-                //linkTo(methodOn(AppointmentController.class).all(null,null)).withRel("appointments"),
-                linkTo(methodOn(DoctorController.class).getAppointments(null,appointment.getDoctorObj().getName())).withRel("appointments")
+        return EntityModel.of(appointment, //
+                Link.of(this.links.doctorAppointments(this.links.baseUri(), appointment.getDoctor()), "appointments")
         );
     }
 
-
-
-
-
 }
-
-
-
-
-
-
-
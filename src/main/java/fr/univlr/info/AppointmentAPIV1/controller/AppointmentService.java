@@ -0,0 +1,159 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentIntervalIndex;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentStore;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Transactions of the appointment endpoints. Open-in-view is off : a connection is only held for the
+ * duration of one of these methods, never while the response is rendered, and what they return is detached
+ * (projections for the listings). The changes are published once committed.
+ */
+@Service
+class AppointmentService {
+    private final AppointmentStore store;
+    private final DoctorService doctorService;
+    private final AppointmentIntervalIndex apptIndex;
+    private final AppointmentBatchImporter batchImporter;
+    private final ApplicationEventPublisher events;
+    private final DoctorLocks locks;
+    private final TransactionTemplate tx;
+
+    AppointmentService(AppointmentStore store, DoctorService doctorService, AppointmentIntervalIndex apptIndex,
+                       AppointmentBatchImporter batchImporter, ApplicationEventPublisher events, DoctorLocks locks,
+                       PlatformTransactionManager txManager) {
+        this.store = store;
+        this.doctorService = doctorService;
+        this.apptIndex = apptIndex;
+        this.batchImporter = batchImporter;
+        this.events = events;
+        this.locks = locks;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    // the whole table, or the appointments starting after the date
+    @Transactional(readOnly = true)
+    public List<AppointmentSummary> list(LocalDateTime date) {
+        return date != null ? this.store.retrieveAppointmentsByDate(date) : this.store.findAll();
+    }
+
+    // keyset pagination : the next page starts after the last id returned, so deep pages cost the same as the first one
+    @Transactional(readOnly = true)
+    public List<AppointmentSummary> page(LocalDateTime date, long after, int limit) {
+        return this.store.findPage(date, after, limit);
+    }
+
+    // the action is called for every row (with the JPA store, the cursor is read inside the transaction)
+    @Transactional(readOnly = true)
+    public void forEach(LocalDateTime date, Consumer<AppointmentSummary> action) {
+        this.store.forEach(date, action);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Appointment> find(Long id) {
+        return this.store.findById(id);
+    }
+
+    // POST : check and insert under the doctor's lock, concurrent overlapping requests can't both get through
+    public Appointment book(Appointment appt) {
+        appt.setId(null);
+        appt.setVersion(null);
+        appt.setDoctorObj(doctorNamed(appt.getDoctor()));
+        Appointment saved = saveIfFree(appt, null);
+        this.events.publishEvent(new AppointmentChangedEvent(AppointmentChangedEvent.Type.CREATED, saved));
+        return saved;
+    }
+
+    // PUT on an unknown id : a new appointment, its id is generated like for a POST
+    public Appointment insert(Appointment appt) {
+        appt.setDoctorObj(doctorNamed(appt.getDoctor()));
+        appt.setId(null);
+        appt.setVersion(null);
+        Appointment saved = saveIfFree(appt, null);
+        this.events.publishEvent(new AppointmentChangedEvent(AppointmentChangedEvent.Type.CREATED, saved));
+        return saved;
+    }
+
+    // PUT on an existing id : replaces the given version of the appointment, throws OptimisticLockingFailureException
+    // if it changed in between
+    public Appointment replace(Long id, Appointment appt, Long version) {
+        // a new instance with the id and the version replaced, the request body is left as it was sent
+        Appointment updated = new Appointment(appt.getDoctor(), appt.getStart(), appt.getEnd(), appt.getPatient());
+        updated.setId(id);
+        updated.setVersion(version);
+        updated.setDoctorObj(doctorNamed(appt.getDoctor()));
+        Appointment saved = saveIfFree(updated, id);
+        this.events.publishEvent(new AppointmentChangedEvent(AppointmentChangedEvent.Type.UPDATED, saved));
+        return saved;
+    }
+
+    // the bulk import, see AppointmentBatchImporter
+    public List<BatchItemResult> importAll(List<Appointment> appts) {
+        List<BatchItemResult> results = this.batchImporter.importAll(appts);
+        // a single event, a large import must not flood the feed (and overflow the subscribers)
+        int created = 0;
+        for (BatchItemResult result : results) {
+            if (result.getStatus() == HttpStatus.CREATED.value()) created++;
+        }
+        if (created > 0) this.events.publishEvent(new AppointmentChangedEvent(created));
+        return results;
+    }
+
+    // an appointment which has already started can't be cancelled any more
+    public void cancel(Long id) {
+        Appointment appointment = this.tx.execute(status -> {
+            Appointment found = this.store.findById(id).orElseThrow(() -> new AppointmentNotFoundException(id));
+            if (found.getStart().isBefore(LocalDateTime.now())) throw new AppointmentConflictException("Appointment " + id + " has already started");
+            this.store.deleteById(id);
+            return found;
+        });
+        this.events.publishEvent(new AppointmentChangedEvent(AppointmentChangedEvent.Type.CANCELLED, appointment));
+    }
+
+    public void delete(Long id) {
+        Appointment appointment = this.tx.execute(status -> {
+            Appointment found = this.store.findById(id).orElseThrow(() -> new AppointmentNotFoundException(id));
+            this.store.deleteById(id);
+            return found;
+        });
+        this.events.publishEvent(new AppointmentChangedEvent(AppointmentChangedEvent.Type.DELETED, appointment));
+    }
+
+    public void deleteAll() {
+        this.tx.executeWithoutResult(status -> this.store.deleteAll());
+        this.events.publishEvent(new AppointmentChangedEvent(AppointmentChangedEvent.Type.CLEARED, null));
+    }
+
+    // the overlap check and the write under the lock of the doctor the appointment goes to, the interval index is
+    // kept in sync with the table (once committed, still under the lock), so the check doesn't hit the database.
+    // An appointment being moved (movedId) doesn't conflict with its own slot. Without dates the entity validation
+    // rejects it when it is flushed.
+    private Appointment saveIfFree(Appointment appt, Long movedId) {
+        Appointment saved = this.locks.withLock(appt.getDoctor(), () -> {
+            boolean taken = appt.getStart() != null && appt.getEnd() != null && (movedId != null
+                    ? this.apptIndex.overlapsOther(appt.getDoctor(), appt.getStart(), appt.getEnd(), movedId)
+                    : this.apptIndex.overlaps(appt.getDoctor(), appt.getStart(), appt.getEnd()));
+            return taken ? null : this.tx.execute(status -> this.store.save(appt));
+        });
+        if (saved == null) throw new AppointmentConflictException("Conflicting appointment");
+        return saved;
+    }
+
+    // an appointment must reference an existing doctor (foreign key)
+    private Doctor doctorNamed(String name) {
+        return this.doctorService.find(name).orElseThrow(() -> new DoctorNotFoundException(name));
+    }
+}
@@ -0,0 +1,45 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Outcome of one appointment of a bulk import : its position in the payload, the HTTP status
+ * it would have got from POST /api/appointments, and the new id or the reason of the rejection.
+ */
+public class BatchItemResult {
+    private final int index;
+    private final int status;
+    private final Long id;
+    private final String error;
+
+    private BatchItemResult(int index, HttpStatus status, Long id, String error) {
+        this.index = index;
+        this.status = status.value();
+        this.id = id;
+        this.error = error;
+    }
+
+    static BatchItemResult created(int index, Long id) {
+        return new BatchItemResult(index, HttpStatus.CREATED, id, null);
+    }
+
+    static BatchItemResult rejected(int index, HttpStatus status, String error) {
+        return new BatchItemResult(index, status, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -1,80 +1,146 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
 import fr.univlr.info.AppointmentAPIV1.model.Doctor;
-import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
-import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentIntervalIndex;
+import fr.univlr.info.AppointmentAPIV1.store.EntityChangeCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping(path = "/api")
 public class DoctorController {
-    private final DoctorRepository doctorRepository;
+    private static final Logger log = LoggerFactory.getLogger(DoctorController.class);
+    static final Duration DEFAULT_AVAILABILITY_RANGE = Duration.ofDays(7);
+    static final Duration MAX_AVAILABILITY_RANGE = Duration.ofDays(366);
+
+    private final DoctorService doctorService;
     private final DoctorModelAssembler doctorAssembler;
-    private final AppointmentRepository  appointmentRepository;
     private final AppointmentModelAssembler appointmentAssembler;
-    public DoctorController(DoctorRepository doctorRepository, DoctorModelAssembler doctorAssembler,AppointmentRepository appointmentRepository,AppointmentModelAssembler appointmentAssembler) {
-        this.doctorRepository = doctorRepository;
+    private final RequestExecutor requestExecutor;
+    private final EntityChangeCounter changes;
+    private final AppointmentIntervalIndex appointmentIndex;
+    public DoctorController(DoctorService doctorService, DoctorModelAssembler doctorAssembler,
+                            AppointmentModelAssembler appointmentAssembler, RequestExecutor requestExecutor, EntityChangeCounter changes,
+                            AppointmentIntervalIndex appointmentIndex) {
+        this.doctorService = doctorService;
         this.doctorAssembler = doctorAssembler;
-        this.appointmentRepository = appointmentRepository;
         this.appointmentAssembler = appointmentAssembler;
+        this.requestExecutor = requestExecutor;
+        this.changes = changes;
+        this.appointmentIndex = appointmentIndex;
     }
 
     @GetMapping("/doctors")
-    ResponseEntity<?> all(@RequestHeader(value="Accept", required=false) String halContent) {
-        List<Doctor> doctors = doctorRepository.findAll();
-        if(halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent)) {
-            List<EntityModel<Doctor>> doctorsWithHallTemplate = this.doctorRepository.findAll().stream().map(doctorAssembler::toModel).collect(Collectors.toList());
-            return ResponseEntity.ok(CollectionModel.of(doctorsWithHallTemplate));
-        }
-        return new ResponseEntity<>(doctors, HttpStatus.OK);
+    CompletableFuture<ResponseEntity<?>> all(@RequestHeader(value="Accept", required=false) String halContent) {
+        return this.requestExecutor.submit(() -> {
+            List<Doctor> doctors = doctorService.all();
+            if(halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent)) {
+                return ResponseEntity.ok(this.doctorAssembler.toCollectionModel(doctors));
+            }
+            return new ResponseEntity<>(doctors, HttpStatus.OK);
+        });
     }
     @GetMapping("/doctors/{name}")
-    ResponseEntity<?> getDoctor(@RequestHeader(value="Accept", required=false) String halContent,@PathVariable String name) {
-        Doctor doctor = doctorRepository.findByName(name);
+    ResponseEntity<?> getDoctor(@RequestHeader(value="Accept", required=false) String halContent,
+                                @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch, @PathVariable String name) {
+        Doctor doctor = doctorService.find(name).orElse(null);
         if (doctor==null) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        if(halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent)){
-            return ResponseEntity.ok(this.doctorAssembler.toModel(doctor));
+        boolean hal = halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent);
+        String etag = ETags.of(doctor.getVersion(), hal);
+        if (ETags.noneMatchFails(ifNoneMatch, etag)) return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+        if(hal){
+            return response.body(this.doctorAssembler.toModel(doctor));
         }
-        return ResponseEntity.ok(doctor);
+        return response.body(doctor);
     }
     @GetMapping("/doctors/{name}/appointments")
-    ResponseEntity<?> getAppointments(@RequestHeader(value="Accept", required=false) String halContent, @PathVariable String name) {
-        List<Appointment> appointments= appointmentRepository.findByDoctorContains(name);
-        if(halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent)){
-            List<EntityModel<Appointment>> doctorAppointmentsWithHallTemplate = appointments.stream().map(appointmentAssembler::toModel2).collect(Collectors.toList());
+    CompletableFuture<ResponseEntity<?>> getAppointments(@RequestHeader(value="Accept", required=false) String halContent,
+                                                         @RequestHeader(value="If-None-Match", required=false) String ifNoneMatch,
+                                                         @PathVariable String name) {
+        boolean hal = halContent !=null && MediaTypes.HAL_JSON_VALUE.equals(halContent);
+        // changes with the appointment table, read before the query
+        String etag = ETags.of(this.changes.version(Appointment.class) + "-" + Integer.toHexString(name.hashCode()), hal);
+        if (ETags.noneMatchFails(ifNoneMatch, etag))
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
 
-            //appointments.stream().map(appointmentAssembler::toModel2).collect(Collectors.toList());
-            /*return ResponseEntity.ok(CollectionModel.of(doctorAppointmentsWithHallTemplate,
-                    linkTo(DoctorController.class).slash("doctor/").withRel("appointments") ));*/
-        //}
-            System.out.println("--------------hello hello--------------- ");
-            System.out.println(CollectionModel.of(doctorAppointmentsWithHallTemplate).getContent().size());
-           return ResponseEntity.ok(CollectionModel.of(doctorAppointmentsWithHallTemplate));
+        return this.requestExecutor.submit(() -> {
+            List<AppointmentSummary> appointments= doctorService.appointments(name);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+            if(hal){
+                List<EntityModel<AppointmentSummary>> doctorAppointmentsWithHallTemplate = appointments.stream().map(appointmentAssembler::toModel2).collect(Collectors.toList());
+                log.debug("doctor.appointments name={} count={}", name, doctorAppointmentsWithHallTemplate.size());
+                return response.body(CollectionModel.of(doctorAppointmentsWithHallTemplate));
+            }
+            return response.body(appointments);
+        });
+    }
+    // free intervals of the doctor in [from, to[ (default : the next 7 days) lasting at least duration
+    // (ISO-8601 like PT30M, or minutes), answered from the in-memory schedule without loading any appointment
+    @GetMapping("/doctors/{name}/availability")
+    ResponseEntity<List<FreeSlot>> getAvailability(@PathVariable String name, @RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to, @RequestParam(required = false) String duration) {
+        if (!doctorService.find(name).isPresent()) throw new DoctorNotFoundException(name);
+        LocalDateTime start = from != null ? AppointmentDates.parse(from) : LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime end = to != null ? AppointmentDates.parse(to) : start != null ? start.plus(DEFAULT_AVAILABILITY_RANGE) : null;
+        Duration minLength = parseDuration(duration);
+        if (start == null || end == null || minLength == null || !start.isBefore(end)
+                || Duration.between(start, end).compareTo(MAX_AVAILABILITY_RANGE) > 0)
+            return ResponseEntity.badRequest().build();
 
+        long[] free = this.appointmentIndex.freeIntervals(name,
+                AppointmentDates.toEpochMillis(start), AppointmentDates.toEpochMillis(end), minLength.toMillis());
+        List<FreeSlot> slots = new ArrayList<>(free.length / 2);
+        for (int i = 0; i < free.length; i += 2) {
+            slots.add(new FreeSlot(free[i], free[i + 1]));
         }
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+        log.debug("doctor.availability name={} from={} to={} slots={}", name, start, end, slots.size());
+        return ResponseEntity.ok(slots);
     }
+
+    private static Duration parseDuration(String duration) {
+        if (duration == null) return Duration.ZERO;
+        try {
+            Duration parsed = duration.startsWith("P") || duration.startsWith("p")
+                    ? Duration.parse(duration)
+                    : Duration.ofMinutes(Long.parseLong(duration));
+            return parsed.isNegative() ? null : parsed;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
     @DeleteMapping("/doctors/{name}")
     ResponseEntity<Long> deleteDoctor(@PathVariable String name) {
         // first i verify if the target doctor which is tried to delete exist, if not i return a not found exception
-        Doctor doctor = this.doctorRepository.findByName(name); //
-        System.out.println(doctor);
+        DoctorService.Deletion deletion = this.doctorService.delete(name);
+        log.debug("doctor.delete name={} outcome={}", name, deletion);
 
-        if(doctor == null) return  ResponseEntity.notFound().build();
+        if(deletion == DoctorService.Deletion.NOT_FOUND) return  ResponseEntity.notFound().build();
 
-        List<Appointment> theDoctorAppointments = this.appointmentRepository.findByDoctorContains(name);
-        if (theDoctorAppointments.size() >0) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        if (deletion == DoctorService.Deletion.HAS_APPOINTMENTS) return ResponseEntity.status(HttpStatus.CONFLICT).build();
 
-        doctorRepository.delete(doctor);
         return ResponseEntity.status(HttpStatus.OK).build();
     }
 
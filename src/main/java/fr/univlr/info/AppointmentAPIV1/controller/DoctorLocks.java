@@ -0,0 +1,70 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped locks serializing the bookings of a doctor : the overlap check and the insert of an appointment
+ * happen under the lock of its doctor, so two overlapping requests can't both pass the check.
+ * Doctors of different stripes book in parallel. ReentrantLock rather than synchronized, a virtual
+ * thread waiting for it doesn't pin its carrier.
+ */
+@Component
+public class DoctorLocks {
+    private final ReentrantLock[] stripes;
+
+    public DoctorLocks(@Value("${appointment.locks.stripes:64}") int stripes) {
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(String doctor, Supplier<T> action) {
+        ReentrantLock lock = this.stripes[stripe(doctor)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the action holding the locks of all these doctors, taken in stripe order so that two
+     * batches can't deadlock.
+     */
+    public <T> T withLocks(Collection<String> doctors, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String doctor : doctors) {
+            indexes.add(stripe(doctor));
+        }
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                this.stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int index : indexes) {
+                if (locked-- == 0) break;
+                this.stripes[index].unlock();
+            }
+        }
+    }
+
+    public boolean sameStripe(String doctor, String other) {
+        return stripe(doctor) == stripe(other);
+    }
+
+    private int stripe(String doctor) {
+        return Math.floorMod(Objects.hashCode(doctor), this.stripes.length);
+    }
+}
@@ -1,21 +1,25 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 import fr.univlr.info.AppointmentAPIV1.model.Doctor;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-
 @Component
 public class DoctorModelAssembler implements RepresentationModelAssembler<Doctor, EntityModel<Doctor>> {
+    private final LinkTemplates links;
+
+    DoctorModelAssembler(LinkTemplates links) {
+        this.links = links;
+    }
+
     @Override
     public EntityModel<Doctor> toModel(Doctor doctor) {
-
+        String baseUri = this.links.baseUri();
         return EntityModel.of(doctor, //
-                linkTo(methodOn(DoctorController.class).getDoctor(null,doctor.getName())).withSelfRel(),
-                //linkTo(methodOn(DoctorController.class).getAppointments(null,doctor.getName())).withRel("appointments"),
-                linkTo(methodOn(DoctorController.class).all(null)).withRel("appointments"),
-                linkTo(methodOn(DoctorController.class).all(null)).withRel("doctors"));
+                Link.of(this.links.doctor(baseUri, doctor.getName())),
+                Link.of(this.links.doctorAppointments(baseUri, doctor.getName()), "appointments"),
+                Link.of(this.links.doctorAvailability(baseUri, doctor.getName()), "availability"),
+                Link.of(this.links.doctors(baseUri), "doctors"));
     }
 }
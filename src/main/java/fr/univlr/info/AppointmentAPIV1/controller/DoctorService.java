@@ -0,0 +1,70 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.model.NameDictionary;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentStore;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Transactions of the doctor endpoints, see {@link AppointmentService}. The doctors are returned detached,
+ * their only lazy association (the appointments) isn't part of the JSON representation.
+ * The doctors found by name are cached as detached copies (without the appointments), each caller gets its own.
+ */
+@Service
+class DoctorService {
+    enum Deletion { DELETED, NOT_FOUND, HAS_APPOINTMENTS }
+
+    private final DoctorRepository doctorRepository;
+    private final AppointmentStore appointmentStore;
+    private final Cache cache;
+
+    DoctorService(DoctorRepository doctorRepository, AppointmentStore appointmentStore, CacheManager cacheManager) {
+        this.doctorRepository = doctorRepository;
+        this.appointmentStore = appointmentStore;
+        this.cache = cacheManager.getCache(DoctorRepository.CACHE);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Doctor> all() {
+        return this.doctorRepository.findAll();
+    }
+
+    // an unknown doctor is cached too (as null), until it is saved (see the evictions of DoctorRepository)
+    @Transactional(readOnly = true)
+    public Optional<Doctor> find(String name) {
+        if (name == null) return Optional.empty();
+        Doctor cached = this.cache.get(NameDictionary.DOCTORS.existing(name), () -> copyOf(this.doctorRepository.findByName(name)));
+        return Optional.ofNullable(copyOf(cached));
+    }
+
+    @Transactional(readOnly = true)
+    public List<AppointmentSummary> appointments(String name) {
+        return this.appointmentStore.findByDoctor(name);
+    }
+
+    // a doctor can only be deleted once all their appointments are gone
+    @Transactional
+    public Deletion delete(String name) {
+        Doctor doctor = this.doctorRepository.findByName(name);
+        if (doctor == null) return Deletion.NOT_FOUND;
+        if (this.appointmentStore.existsByDoctor(name)) return Deletion.HAS_APPOINTMENTS;
+        this.doctorRepository.delete(doctor);
+        return Deletion.DELETED;
+    }
+
+    private static Doctor copyOf(Doctor doctor) {
+        if (doctor == null) return null;
+        Doctor copy = new Doctor(doctor.getName());
+        copy.setId(doctor.getId());
+        copy.setVersion(doctor.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,49 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.util.StringUtils;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Strong ETags of the resources, built from the entity version (or the change counter of a collection).
+ * The JSON and HAL representations of a resource get different tags.
+ */
+final class ETags {
+    private static final String HAL_SUFFIX = "-hal";
+    // what of() gives for an entity version (see AppointmentController.one), weak or strong
+    private static final Pattern ENTITY_TAG = Pattern.compile("(?:W/)?\"(\\d+)(?:\\.started)?(?:" + HAL_SUFFIX + ")?\"");
+
+    private ETags() {
+    }
+
+    static String of(Object version, boolean hal) {
+        return "\"" + version + (hal ? HAL_SUFFIX : "") + "\"";
+    }
+
+    /**
+     * If-None-Match : tells if one of the tags of the header (weak comparison) is the current one.
+     */
+    static boolean noneMatchFails(String ifNoneMatch, String etag) {
+        if (!StringUtils.hasText(ifNoneMatch)) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) return true;
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Version carried by an If-Match header (tag of either representation of an appointment), null if it is absent
+     * or {@code *}. Throws {@link IllegalArgumentException} if it isn't one of our entity tags, a collection tag
+     * included.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (!StringUtils.hasText(ifMatch) || ifMatch.trim().equals("*")) return null;
+        Matcher tag = ENTITY_TAG.matcher(ifMatch.trim());
+        if (!tag.matches()) throw new IllegalArgumentException(ifMatch);
+        return Long.valueOf(tag.group(1));
+    }
+}
@@ -0,0 +1,67 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Request execution mode ({@code appointment.execution.mode}) :
+ * <ul>
+ *     <li>platform : Tomcat's thread pool, the default</li>
+ *     <li>virtual : one virtual thread per request, only on a Java 21 or later runtime (the startup fails otherwise)</li>
+ *     <li>async : the read endpoints complete on a bounded pool, see {@link RequestExecutor}</li>
+ * </ul>
+ */
+@Configuration
+class ExecutionModeConfiguration {
+    static final String MODE_PROPERTY = "appointment.execution.mode";
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionModeConfiguration.class);
+
+    private static final int VIRTUAL_THREADS_FEATURE = 21;
+
+    enum Mode { PLATFORM, VIRTUAL, ASYNC }
+
+    @Bean(destroyMethod = "shutdown")
+    RequestExecutor requestExecutor(@Value("${" + MODE_PROPERTY + ":platform}") String mode,
+                                    @Value("${appointment.execution.async.pool-size:64}") int poolSize,
+                                    @Value("${appointment.execution.async.queue-capacity:1000}") int queueCapacity) {
+        if (Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)) == Mode.ASYNC) {
+            log.info("execution.mode=async poolSize={} queueCapacity={}", poolSize, queueCapacity);
+            return RequestExecutor.bounded(poolSize, queueCapacity);
+        }
+        return RequestExecutor.inline();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = MODE_PROPERTY, havingValue = "virtual")
+    ExecutorService virtualThreadExecutor() {
+        if (Runtime.version().feature() < VIRTUAL_THREADS_FEATURE) {
+            throw new IllegalStateException(MODE_PROPERTY + "=virtual needs Java " + VIRTUAL_THREADS_FEATURE
+                    + " or later, running " + Runtime.version() + " : use platform or async");
+        }
+        // looked up by reflection, the application is compiled for Java 17
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("execution.mode=virtual");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("no virtual thread executor on Java " + Runtime.version(), e);
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = MODE_PROPERTY, havingValue = "virtual")
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+}
@@ -0,0 +1,24 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import java.util.Date;
+
+/**
+ * A free interval [startDate, endDate[ of a doctor, dates serialized like the appointment ones.
+ */
+public class FreeSlot {
+    private final Date startDate;
+    private final Date endDate;
+
+    FreeSlot(long start, long end) {
+        this.startDate = new Date(start);
+        this.endDate = new Date(end);
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+}
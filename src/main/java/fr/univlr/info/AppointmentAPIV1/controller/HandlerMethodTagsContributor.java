@@ -0,0 +1,35 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Adds the controller method serving the request (e.g. {@code AppointmentController.all}) to the
+ * {@code http.server.requests} timers, so that each endpoint method has its own latency histogram.
+ */
+@Component
+class HandlerMethodTagsContributor implements WebMvcTagsContributor {
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler, Throwable exception) {
+        return Tags.of(handlerTag(handler));
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.of(handlerTag(handler));
+    }
+
+    private static Tag handlerTag(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            return Tag.of("handler", method.getBeanType().getSimpleName() + "." + method.getMethod().getName());
+        }
+        return Tag.of("handler", "none");
+    }
+}
@@ -0,0 +1,153 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.hateoas.UriTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HAL link templates of the controllers, resolved once from their request mappings.
+ * Building a link only concatenates the base URI of the current request with the expanded
+ * template, instead of going through a {@code linkTo(methodOn(...))} proxy for every entity.
+ */
+@Component
+class LinkTemplates {
+    private static final String BASE_URI_ATTRIBUTE = LinkTemplates.class.getName() + ".baseUri";
+    private static final ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+
+    private final Template appointment = Template.of(AppointmentController.class, "one");
+    private final Template appointments = Template.of(AppointmentController.class, "all");
+    private final Template newAppointment = Template.of(AppointmentController.class, "newAppointment");
+    private final Template cancel = Template.of(AppointmentController.class, "cancel");
+    private final Template doctor = Template.of(DoctorController.class, "getDoctor");
+    private final Template doctors = Template.of(DoctorController.class, "all");
+    private final Template doctorAppointments = Template.of(DoctorController.class, "getAppointments");
+    private final Template doctorAvailability = Template.of(DoctorController.class, "getAvailability");
+
+    // scheme, host, port and servlet mapping of the current request, computed once per request
+    String baseUri() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return "";
+        String baseUri = (String) attributes.getAttribute(BASE_URI_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (baseUri == null) {
+            baseUri = ServletUriComponentsBuilder.fromCurrentServletMapping().build().toUriString();
+            attributes.setAttribute(BASE_URI_ATTRIBUTE, baseUri, RequestAttributes.SCOPE_REQUEST);
+        }
+        return baseUri;
+    }
+
+    String appointment(String baseUri, Long id) {
+        return this.appointment.expand(baseUri, String.valueOf(id));
+    }
+
+    String appointments(String baseUri) {
+        return this.appointments.expand(baseUri);
+    }
+
+    // a page of the listing, the date is left out if null
+    String appointmentsPage(String baseUri, String date, long after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        if (date != null) params.put("date", date);
+        params.put("after", after);
+        params.put("limit", limit);
+        return UriTemplate.of(this.appointments.expand(baseUri)).expand(params).toString();
+    }
+
+    String newAppointment(String baseUri) {
+        return this.newAppointment.expand(baseUri);
+    }
+
+    String cancel(String baseUri, Long id) {
+        return this.cancel.expand(baseUri, String.valueOf(id));
+    }
+
+    String doctor(String baseUri, String name) {
+        return this.doctor.expand(baseUri, UriUtils.encodePathSegment(name, StandardCharsets.UTF_8));
+    }
+
+    String doctors(String baseUri) {
+        return this.doctors.expand(baseUri);
+    }
+
+    String doctorAppointments(String baseUri, String name) {
+        return this.doctorAppointments.expand(baseUri, UriUtils.encodePathSegment(name, StandardCharsets.UTF_8));
+    }
+
+    String doctorAvailability(String baseUri, String name) {
+        return this.doctorAvailability.expand(baseUri, UriUtils.encodePathSegment(name, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A mapping split around its (at most one) path variable, the optional request parameters
+     * being kept as a URI template query, like linkTo(methodOn(...)) renders them.
+     */
+    static final class Template {
+        private final String head, tail;
+
+        private Template(String head, String tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        /**
+         * Template of the request mapped method of this name, the parameter types (if any) tell overloads apart.
+         * Throws {@link IllegalArgumentException} if there is no such method or more than one.
+         */
+        static Template of(Class<?> controller, String methodName, Class<?>... parameterTypes) {
+            Method method = null;
+            for (Method candidate : controller.getDeclaredMethods()) {
+                if (!candidate.getName().equals(methodName)
+                        || !AnnotatedElementUtils.hasAnnotation(candidate, RequestMapping.class)
+                        || (parameterTypes.length > 0 && !Arrays.equals(candidate.getParameterTypes(), parameterTypes))) continue;
+                if (method != null) throw new IllegalArgumentException("Ambiguous mapped method " + methodName + " in "
+                        + controller.getName() + " (" + method + ", " + candidate + "), give its parameter types");
+                method = candidate;
+            }
+            if (method == null) throw new IllegalArgumentException("No mapped method " + methodName + " in " + controller.getName());
+            RequestMapping type = AnnotatedElementUtils.findMergedAnnotation(controller, RequestMapping.class);
+            RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+            String path = (type != null && type.path().length > 0 ? type.path()[0] : "")
+                    + (mapping != null && mapping.path().length > 0 ? mapping.path()[0] : "");
+
+            List<String> optionalParams = new ArrayList<>();
+            String[] names = parameterNames.getParameterNames(method);
+            Parameter[] parameters = method.getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                RequestParam param = parameters[i].getAnnotation(RequestParam.class);
+                if (param != null && !param.required()) {
+                    optionalParams.add(StringUtils.hasText(param.name()) ? param.name() : names[i]);
+                }
+            }
+            String query = optionalParams.isEmpty() ? "" : "{?" + String.join(",", optionalParams) + "}";
+
+            int variable = path.indexOf('{');
+            if (variable < 0) return new Template(path + query, "");
+            return new Template(path.substring(0, variable), path.substring(path.indexOf('}', variable) + 1) + query);
+        }
+
+        String expand(String baseUri) {
+            return baseUri + this.head + this.tail;
+        }
+
+        String expand(String baseUri, String value) {
+            return baseUri + this.head + value + this.tail;
+        }
+    }
+}
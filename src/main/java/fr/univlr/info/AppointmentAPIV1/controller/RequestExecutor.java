@@ -0,0 +1,62 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking part of the read endpoints.
+ * In the {@code platform} and {@code virtual} modes the work is done right away on the thread serving
+ * the request, in the {@code async} mode it is handed to a bounded pool and the Tomcat thread is released
+ * until the result is there. A full pool rejects the request (503, see {@link RequestRejectedAdvice}).
+ */
+public class RequestExecutor {
+    private final ThreadPoolTaskExecutor executor; // null : inline
+
+    private RequestExecutor(ThreadPoolTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    static RequestExecutor inline() {
+        return new RequestExecutor(null);
+    }
+
+    static RequestExecutor bounded(int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("appt-async-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        // the links are built from the current request, so the worker sees the request of the task
+        executor.setTaskDecorator(task -> {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (!(attributes instanceof ServletRequestAttributes)) return task;
+            // fresh attributes : the ones of the request thread are marked completed once it returns
+            RequestAttributes workerAttributes = new ServletRequestAttributes(((ServletRequestAttributes) attributes).getRequest());
+            return () -> {
+                RequestContextHolder.setRequestAttributes(workerAttributes);
+                try {
+                    task.run();
+                } finally {
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            };
+        });
+        executor.initialize();
+        return new RequestExecutor(executor);
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> work) {
+        if (this.executor == null) return CompletableFuture.completedFuture(work.get());
+        return CompletableFuture.supplyAsync(work, this.executor);
+    }
+
+    // destroy method of the bean, see ExecutionModeConfiguration
+    public void shutdown() {
+        if (this.executor != null) this.executor.shutdown();
+    }
+}
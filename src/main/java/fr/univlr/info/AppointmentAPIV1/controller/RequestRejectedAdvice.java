@@ -0,0 +1,19 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.RejectedExecutionException;
+
+@ControllerAdvice
+public class RequestRejectedAdvice {
+    @ResponseBody
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    String requestRejectedHandler(RejectedExecutionException ex) {
+        return "Too many requests in progress, retry later";
+    }
+}
@@ -0,0 +1,60 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One key=value line per sampled request ({@code appointment.logging.request-sample-rate}, 0 turns it off) :
+ * under load only a fraction of the requests reach the appender. The sampling is decided once per request,
+ * before anything is formatted, an asynchronous request is logged when its response is complete.
+ */
+@Component
+@Profile("!reactive")
+class SampledRequestLogFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(SampledRequestLogFilter.class);
+    private static final String START_ATTRIBUTE = SampledRequestLogFilter.class.getName() + ".start";
+
+    private final double sampleRate;
+
+    SampledRequestLogFilter(@Value("${appointment.logging.request-sample-rate:0.01}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+        if (start == null && !isAsyncDispatch(request) && sampled()) {
+            start = System.nanoTime();
+            request.setAttribute(START_ATTRIBUTE, start);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (start != null && !isAsyncStarted(request)) {
+                log.info("http.request method={} uri={} status={} millis={}", request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+    }
+
+    private boolean sampled() {
+        return this.sampleRate >= 1 || (this.sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < this.sampleRate);
+    }
+}
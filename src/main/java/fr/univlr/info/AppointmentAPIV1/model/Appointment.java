@@ -1,38 +1,73 @@
 package fr.univlr.info.AppointmentAPIV1.model;
 
 import fr.univlr.info.AppointmentAPIV1.controller.AppointmentDateConstraint;
-import net.minidev.json.annotate.JsonIgnore;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentIntervalIndex;
+import fr.univlr.info.AppointmentAPIV1.store.CanonicalNameConverter;
+import fr.univlr.info.AppointmentAPIV1.store.EntityChangeCounter;
+import fr.univlr.info.AppointmentAPIV1.store.PooledSequenceGenerator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.Objects;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_appointment_doctor_range", columnList = "doctor, startDate, endDate"),
+        @Index(name = "idx_appointment_start", columnList = "startDate"),
+        @Index(name = "idx_appointment_doctor_id", columnList = "doctor_id")
+})
+@EntityListeners({AppointmentIntervalIndex.Listener.class, EntityChangeCounter.Listener.class})
 @AppointmentDateConstraint
 public class Appointment {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "appointment_seq")
+    @GenericGenerator(name = "appointment_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "appointment_seq"))
     private Long id;
+    // optimistic locking, also the ETag of the appointment
     @JsonIgnore
-    @ManyToOne
-    @Transient
+    @Version
+    private Long version;
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id")
     private Doctor doctorObj;
+    // name of the doctor, kept along the foreign key for the JSON representation and the range index
+    // the names are shared instances, however they are read (see NameDictionary)
+    @Convert(converter = CanonicalNameConverter.class)
+    @JsonDeserialize(using = CanonicalNameDeserializer.class)
     private String doctor;
-    private Date startDate, endDate;
+    // serialized from the fields (epoch millis), the Date getters are only kept for the Java callers
+    @JsonProperty
+    @JsonSerialize(using = EpochMillisSerializer.class)
+    private LocalDateTime startDate, endDate;
+    @Convert(converter = CanonicalNameConverter.Patient.class)
+    @JsonDeserialize(using = CanonicalNameDeserializer.Patient.class)
     private String patient;
 
     public Appointment() {
     }
 
-    public Appointment(String doctor, Date start, Date end, String patient) {
-        this.doctor = doctor;
+    public Appointment(String doctor, LocalDateTime start, LocalDateTime end, String patient) {
+        this.doctor = NameDictionary.DOCTORS.existing(doctor);
         this.startDate = start;
         this.endDate = end;
-        this.patient = patient;
+        this.patient = NameDictionary.shared(patient);
 
     }
 
+    public Appointment(String doctor, Date start, Date end, String patient) {
+        this(doctor, AppointmentDates.toLocalDateTime(start), AppointmentDates.toLocalDateTime(end), patient);
+    }
+
     public Long getId() {
         return id;
     }
@@ -41,6 +76,14 @@ public class Appointment {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getDoctor() {
         return doctor;
     }
@@ -57,19 +100,41 @@ public class Appointment {
         this.doctor = doctor;
     }
 
+    // the JSON representation keeps the epoch millis of java.util.Date (read through the setters), the entity
+    // itself works with LocalDateTime
+    @JsonIgnore
     public Date getStartDate() {
-        return this.startDate;
+        return AppointmentDates.toDate(this.startDate);
     }
 
     public void setStartDate(Date start) {
-        this.startDate = start;
+        this.startDate = AppointmentDates.toLocalDateTime(start);
     }
 
+    @JsonIgnore
     public Date getEndDate() {
-        return endDate;
+        return AppointmentDates.toDate(this.endDate);
     }
 
     public void setEndDate(Date end) {
+        this.endDate = AppointmentDates.toLocalDateTime(end);
+    }
+
+    @JsonIgnore
+    public LocalDateTime getStart() {
+        return this.startDate;
+    }
+
+    public void setStart(LocalDateTime start) {
+        this.startDate = start;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getEnd() {
+        return this.endDate;
+    }
+
+    public void setEnd(LocalDateTime end) {
         this.endDate = end;
     }
 
@@ -82,12 +147,11 @@ public class Appointment {
 
     @Override
     public String toString() {
-        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
         return "Appointment{" +
                 "id=" + id +
                 ", doctor='" + doctor + '\'' +
-                ", startDate=" + df.format(startDate) +
-                ", endDate=" + df.format(endDate) +
+                ", startDate=" + AppointmentDates.format(startDate) +
+                ", endDate=" + AppointmentDates.format(endDate) +
                 ", patient='" + patient + '\'' +
                 '}';
     }
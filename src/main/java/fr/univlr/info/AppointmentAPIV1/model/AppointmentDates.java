@@ -0,0 +1,79 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Date;
+
+/**
+ * Parsing and formatting of the appointment dates ({@code yyyy-MM-dd'T'HH:mm}, local time).
+ * Everything here is immutable and can be shared between threads.
+ */
+public final class AppointmentDates {
+    public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm")
+            .withResolverStyle(ResolverStyle.STRICT);
+    // also accepts one digit months, days and hours ("2021-1-13T9:30")
+    private static final DateTimeFormatter LENIENT_DIGITS_FORMATTER = DateTimeFormatter.ofPattern("uuuu-M-d'T'H:mm")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private AppointmentDates() {
+    }
+
+    /**
+     * Parses a date, returns null if it is malformed or doesn't exist (month 20, February 30...).
+     */
+    public static LocalDateTime parse(CharSequence text) {
+        if (text == null) return null;
+        int length = text.length();
+        // fast path : yyyy-MM-ddTHH:mm or yyyy-MM-ddTH:mm, read without any allocation but the result
+        if ((length == 16 || length == 15) && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+                && text.charAt(length - 3) == ':') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            int hour = digits(text, 11, length - 3);
+            int minute = digits(text, length - 2, length);
+            if ((year | month | day | hour | minute) < 0) return null;
+            try {
+                return LocalDateTime.of(year, month, day, hour, minute);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+        try {
+            return LocalDateTime.parse(text, LENIENT_DIGITS_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // value of the decimal digits in [from, to[, -1 if one of them isn't a digit
+    private static int digits(CharSequence text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public static String format(LocalDateTime date) {
+        return date != null ? FORMATTER.format(date) : null;
+    }
+
+    public static long toEpochMillis(LocalDateTime date) {
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static Date toDate(LocalDateTime date) {
+        return date != null ? Date.from(date.atZone(ZoneId.systemDefault()).toInstant()) : null;
+    }
+
+    public static LocalDateTime toLocalDateTime(Date date) {
+        return date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+}
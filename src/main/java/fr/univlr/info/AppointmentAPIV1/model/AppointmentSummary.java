@@ -0,0 +1,76 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.springframework.hateoas.server.core.Relation;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Read-only view of an appointment for the listings, built by the JPQL constructor expressions of
+ * {@link fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository} : no managed entity, no dirty checking snapshot.
+ * Its JSON representation is the one of {@link Appointment}, HAL relations included.
+ */
+@Relation(itemRelation = "appointment", collectionRelation = "appointmentList")
+public class AppointmentSummary {
+    private final Long id;
+    private final String doctor;
+    // serialized from the fields (epoch millis, see Appointment)
+    @JsonProperty
+    @JsonSerialize(using = EpochMillisSerializer.class)
+    private final LocalDateTime startDate, endDate;
+    private final String patient;
+
+    public AppointmentSummary(Long id, String doctor, LocalDateTime startDate, LocalDateTime endDate, String patient) {
+        this.id = id;
+        this.doctor = doctor;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.patient = patient;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    @JsonIgnore
+    public Date getStartDate() {
+        return AppointmentDates.toDate(this.startDate);
+    }
+
+    @JsonIgnore
+    public Date getEndDate() {
+        return AppointmentDates.toDate(this.endDate);
+    }
+
+    @JsonIgnore
+    public LocalDateTime getStart() {
+        return this.startDate;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getEnd() {
+        return this.endDate;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentSummary{" +
+                "id=" + id +
+                ", doctor='" + doctor + '\'' +
+                ", startDate=" + AppointmentDates.format(startDate) +
+                ", endDate=" + AppointmentDates.format(endDate) +
+                ", patient='" + patient + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,40 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads a doctor name as its canonical instance if the doctor is known (see {@link NameDictionary}), without
+ * adding it : the names of a request don't go into the dictionary.
+ */
+public class CanonicalNameDeserializer extends StdScalarDeserializer<String> {
+    public CanonicalNameDeserializer() {
+        super(String.class);
+    }
+
+    @Override
+    public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String name = p.getValueAsString();
+        if (name == null) return (String) ctxt.handleUnexpectedToken(String.class, p);
+        return NameDictionary.DOCTORS.existing(name);
+    }
+
+    /**
+     * Reads a patient name as its shared instance ({@link NameDictionary#shared}).
+     */
+    public static class Patient extends StdScalarDeserializer<String> {
+        public Patient() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String name = p.getValueAsString();
+            if (name == null) return (String) ctxt.handleUnexpectedToken(String.class, p);
+            return NameDictionary.shared(name);
+        }
+    }
+}
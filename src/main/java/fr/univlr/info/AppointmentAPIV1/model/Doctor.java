@@ -1,19 +1,39 @@
 package fr.univlr.info.AppointmentAPIV1.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import fr.univlr.info.AppointmentAPIV1.store.CanonicalNameConverter;
+import fr.univlr.info.AppointmentAPIV1.store.EntityChangeCounter;
+import fr.univlr.info.AppointmentAPIV1.store.PooledSequenceGenerator;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 import javax.persistence.*;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_doctor_name", columnList = "name", unique = true))
+@BatchSize(size = 32)
+@EntityListeners(EntityChangeCounter.Listener.class)
 public class Doctor {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "doctor_seq")
+    @GenericGenerator(name = "doctor_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "doctor_seq"))
     private Long id;
+    @Convert(converter = CanonicalNameConverter.class)
     private String name;
-    @Transient
-    @OneToMany(mappedBy = "DoctorObj")
+    // optimistic locking, also the ETag of the doctor
+    @JsonIgnore
+    @Version
+    private Long version;
+    @JsonIgnore
+    @OneToMany(mappedBy = "doctorObj")
+    @BatchSize(size = 32)
     private List<Appointment> appointments;
     public Doctor(String name) {
-        this.name=name;
+        this.name=NameDictionary.DOCTORS.canonical(name);
     }
 
     public Doctor() {
@@ -27,6 +47,14 @@ public class Doctor {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
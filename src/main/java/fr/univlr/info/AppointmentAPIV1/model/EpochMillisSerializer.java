@@ -0,0 +1,23 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Writes an appointment date as epoch milliseconds (local time zone), like a {@link java.util.Date} is written,
+ * without going through one.
+ */
+public class EpochMillisSerializer extends StdScalarSerializer<LocalDateTime> {
+    public EpochMillisSerializer() {
+        super(LocalDateTime.class);
+    }
+
+    @Override
+    public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeNumber(AppointmentDates.toEpochMillis(value));
+    }
+}
@@ -0,0 +1,118 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of names, so that the appointments of a doctor share one String instead of each keeping
+ * the copy it was read with, and a compact int code for each of them.
+ * <p>
+ * Bounded : once {@link #capacity()} names are known, new ones are handed back as they are (with no code),
+ * the dictionary never evicts, so a code stays valid for the life of the application.
+ * Lookups are lock free, only the insertion of a new name is synchronized.
+ * <p>
+ * The table grows with the names, up to the capacity. A store keeping codes in its rows owns a dictionary of its
+ * own (see ColumnarAppointmentStore), which it clears with its rows.
+ * <p>
+ * {@link #DOCTORS} only takes the names of the doctor table : a request only looks a doctor name up
+ * ({@link #existing}), so no client can fill it. The patient names, which come from the requests, are
+ * {@link #shared} through the JVM string table instead, which doesn't keep a name nobody uses any more.
+ */
+public final class NameDictionary {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int NO_CODE = -1;
+    // filled by the Doctor entity and the JPA converter, looked up by the Jackson deserializer and the cache keys
+    public static final NameDictionary DOCTORS = new NameDictionary(DEFAULT_CAPACITY);
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final int capacity;
+    // replaced by a larger copy when full, a code read from the map is always in the current array
+    private volatile String[] names;
+    private int size;
+
+    public NameDictionary(int capacity) {
+        this.capacity = capacity;
+        this.names = new String[Math.min(capacity, 16)];
+    }
+
+    /**
+     * The shared instance of a name which isn't kept in a dictionary (a patient name), weakly interned.
+     */
+    public static String shared(String name) {
+        return name != null ? name.intern() : null;
+    }
+
+    /**
+     * The shared instance equal to this name (the name itself if it is new and the dictionary is full).
+     */
+    public String canonical(String name) {
+        int code = code(name);
+        return code != NO_CODE ? this.names[code] : name;
+    }
+
+    /**
+     * The shared instance equal to this name if there is one, the name itself otherwise (nothing is added,
+     * for the lookups of names which may not exist).
+     */
+    public String existing(String name) {
+        Integer code = name != null ? this.codes.get(name) : null;
+        return code != null ? this.names[code] : name;
+    }
+
+    /**
+     * Code of the name, added if needed, {@link #NO_CODE} if it is null or the dictionary is full.
+     */
+    public int code(String name) {
+        if (name == null) return NO_CODE;
+        Integer code = this.codes.get(name);
+        return code != null ? code : add(name);
+    }
+
+    /**
+     * Code of a known name, {@link #NO_CODE} if it is null or was never added (nothing is added).
+     */
+    public int existingCode(String name) {
+        Integer code = name != null ? this.codes.get(name) : null;
+        return code != null ? code : NO_CODE;
+    }
+
+    public String name(int code) {
+        return code != NO_CODE ? this.names[code] : null;
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    // the names by code, as of now
+    public synchronized List<String> names() {
+        return Arrays.asList(Arrays.copyOf(this.names, this.size));
+    }
+
+    /**
+     * Forgets all the names, their codes are reused : only for a dictionary whose owner drops every code it
+     * handed out at the same time, never for {@link #DOCTORS}.
+     */
+    public synchronized void clear() {
+        this.codes.clear();
+        this.names = new String[Math.min(this.capacity, 16)];
+        this.size = 0;
+    }
+
+    // the name is stored before its code is published through the map
+    private synchronized int add(String name) {
+        Integer code = this.codes.get(name);
+        if (code != null) return code;
+        if (this.size == this.capacity) return NO_CODE;
+        if (this.size == this.names.length) this.names = Arrays.copyOf(this.names, (int) Math.min(this.capacity, 2L * this.size));
+        this.names[this.size] = name;
+        this.codes.put(name, this.size);
+        return this.size++;
+    }
+}
@@ -0,0 +1,347 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the booked intervals of each doctor, used to detect conflicting
+ * appointments without a database round trip.
+ * Its {@link Listener} is registered as a JPA entity listener on {@link Appointment}, so every insert, update
+ * and delete flushed by Hibernate is mirrored here, once the transaction has committed.
+ * <p>
+ * No object per appointment : the schedules are primitive arrays, and the position of each appointment (to
+ * remove it by id) is kept in an open addressing table of primitive columns, so that it stays small next to
+ * the off-heap rows of {@link ColumnarAppointmentStore}.
+ */
+@Component
+public class AppointmentIntervalIndex {
+    private final Map<String, DoctorSchedule> schedules = new ConcurrentHashMap<>();
+    private final SlotTable slots = new SlotTable();
+
+    public synchronized void put(Appointment appt) {
+        if (appt.getId() == null) return;
+        add(appt.getId(), appt.getDoctor(), appt.getStart(), appt.getEnd());
+    }
+
+    public synchronized void add(long id, String doctor, LocalDateTime start, LocalDateTime end) {
+        remove(id);
+        if (doctor == null || start == null || end == null) return;
+        addMillis(id, doctor, AppointmentDates.toEpochMillis(start), AppointmentDates.toEpochMillis(end));
+    }
+
+    // start and end in epoch milliseconds, lets a store rebuild the index from its own columns (after clear())
+    public synchronized void addMillis(long id, String doctor, long start, long end) {
+        remove(id);
+        if (doctor == null) return;
+        DoctorSchedule schedule = this.schedules.computeIfAbsent(doctor, name -> new DoctorSchedule());
+        schedule.add(id, start, end);
+        this.slots.put(id, start, schedule);
+    }
+
+    public synchronized void remove(Long id) {
+        if (id == null) return;
+        int slot = this.slots.find(id);
+        if (slot >= 0) {
+            this.slots.schedules[slot].remove(id, this.slots.starts[slot]);
+            this.slots.removeAt(slot);
+        }
+    }
+
+    public synchronized void clear() {
+        this.schedules.clear();
+        this.slots.clear();
+    }
+
+    public synchronized void rebuild(Iterable<Appointment> appointments) {
+        clear();
+        for (Appointment appt : appointments) {
+            put(appt);
+        }
+    }
+
+    /**
+     * Tells if the doctor already has an appointment intersecting [start, end[.
+     */
+    public boolean overlaps(String doctor, LocalDateTime start, LocalDateTime end) {
+        DoctorSchedule schedule = this.schedules.get(doctor);
+        return schedule != null && schedule.overlaps(AppointmentDates.toEpochMillis(start), AppointmentDates.toEpochMillis(end));
+    }
+
+    /**
+     * Same as {@link #overlaps}, leaving out the appointment of this id (it is the one being moved).
+     */
+    public boolean overlapsOther(String doctor, LocalDateTime start, LocalDateTime end, long id) {
+        DoctorSchedule schedule = this.schedules.get(doctor);
+        return schedule != null && schedule.overlapsOther(AppointmentDates.toEpochMillis(start), AppointmentDates.toEpochMillis(end), id);
+    }
+
+    /**
+     * Free intervals of the doctor within [from, to[ lasting at least minLength (epoch milliseconds),
+     * flattened as start0, end0, start1, end1...
+     */
+    public long[] freeIntervals(String doctor, long from, long to, long minLength) {
+        DoctorSchedule schedule = this.schedules.get(doctor);
+        if (schedule == null) return to - from >= Math.max(minLength, 1) ? new long[]{from, to} : new long[0];
+        return schedule.freeIntervals(from, to, minLength);
+    }
+
+    /**
+     * The JPA entity listener of {@link Appointment}. Hibernate creates its own instance of each listener (through
+     * the Spring bean container, constructor injected) rather than using the beans, so the listener only hands the
+     * flushed values to the index of the application context.
+     */
+    public static class Listener {
+        private final AppointmentIntervalIndex index;
+
+        public Listener(AppointmentIntervalIndex index) {
+            this.index = index;
+        }
+
+        @PostPersist
+        @PostUpdate
+        void onSave(Appointment appt) {
+            Long id = appt.getId();
+            String doctor = appt.getDoctor();
+            LocalDateTime start = appt.getStart(), end = appt.getEnd();
+            afterCommit(() -> {
+                if (id != null) this.index.add(id, doctor, start, end);
+            });
+        }
+
+        @PostRemove
+        void onRemove(Appointment appt) {
+            Long id = appt.getId();
+            afterCommit(() -> this.index.remove(id));
+        }
+
+        // the flushed values are kept, the index only moves once they are committed : a rolled back insert doesn't
+        // hold the interval, a rolled back delete doesn't free it (like the second count of EntityChangeCounter)
+        private static void afterCommit(Runnable change) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                change.run();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Id to (start, schedule) of the indexed appointments, linear probing in parallel arrays, half full at most.
+     * Removals shift the following entries of the probe sequence back, there are no tombstones.
+     */
+    private static final class SlotTable {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] ids = emptyIds(16);
+        private long[] starts = new long[16];
+        private DoctorSchedule[] schedules = new DoctorSchedule[16];
+        private int size;
+
+        int find(long id) {
+            int mask = this.ids.length - 1;
+            for (int i = home(id, mask); this.ids[i] != EMPTY; i = (i + 1) & mask) {
+                if (this.ids[i] == id) return i;
+            }
+            return -1;
+        }
+
+        // the id must not be there already
+        void put(long id, long start, DoctorSchedule schedule) {
+            if (2 * (this.size + 1) > this.ids.length) resize(this.ids.length * 2);
+            int mask = this.ids.length - 1;
+            int i = home(id, mask);
+            while (this.ids[i] != EMPTY) i = (i + 1) & mask;
+            this.ids[i] = id;
+            this.starts[i] = start;
+            this.schedules[i] = schedule;
+            this.size++;
+        }
+
+        void removeAt(int i) {
+            int mask = this.ids.length - 1;
+            for (int j = (i + 1) & mask; this.ids[j] != EMPTY; j = (j + 1) & mask) {
+                int home = home(this.ids[j], mask);
+                // the entry at j can fill the hole if its home isn't in (i, j] (cyclically)
+                boolean stays = i < j ? home > i && home <= j : home > i || home <= j;
+                if (!stays) {
+                    this.ids[i] = this.ids[j];
+                    this.starts[i] = this.starts[j];
+                    this.schedules[i] = this.schedules[j];
+                    i = j;
+                }
+            }
+            this.ids[i] = EMPTY;
+            this.schedules[i] = null;
+            this.size--;
+        }
+
+        void clear() {
+            this.ids = emptyIds(16);
+            this.starts = new long[16];
+            this.schedules = new DoctorSchedule[16];
+            this.size = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = this.ids, oldStarts = this.starts;
+            DoctorSchedule[] oldSchedules = this.schedules;
+            this.ids = emptyIds(capacity);
+            this.starts = new long[capacity];
+            this.schedules = new DoctorSchedule[capacity];
+            this.size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) put(oldIds[i], oldStarts[i], oldSchedules[i]);
+            }
+        }
+
+        private static long[] emptyIds(int capacity) {
+            long[] ids = new long[capacity];
+            Arrays.fill(ids, EMPTY);
+            return ids;
+        }
+
+        private static int home(long id, int mask) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * The appointments of one doctor as parallel primitive arrays sorted by start (then id), with the running
+     * maximum of the ends : an overlap test or the first slot of a range is one binary search, without any
+     * object per appointment. Inserts and removals shift the tail of the arrays.
+     */
+    private static final class DoctorSchedule {
+        private long[] starts = new long[16], ends = new long[16], ids = new long[16];
+        // maxEnds[i] = max(ends[0..i]), non decreasing
+        private long[] maxEnds = new long[16];
+        private int size;
+
+        synchronized void add(long id, long start, long end) {
+            if (this.size == this.starts.length) {
+                int capacity = this.size * 2;
+                this.starts = Arrays.copyOf(this.starts, capacity);
+                this.ends = Arrays.copyOf(this.ends, capacity);
+                this.ids = Arrays.copyOf(this.ids, capacity);
+                this.maxEnds = Arrays.copyOf(this.maxEnds, capacity);
+            }
+            int i = -(find(start, id) + 1);
+            int tail = this.size - i;
+            System.arraycopy(this.starts, i, this.starts, i + 1, tail);
+            System.arraycopy(this.ends, i, this.ends, i + 1, tail);
+            System.arraycopy(this.ids, i, this.ids, i + 1, tail);
+            this.starts[i] = start;
+            this.ends[i] = end;
+            this.ids[i] = id;
+            this.size++;
+            updateMaxEnds(i);
+        }
+
+        synchronized void remove(long id, long start) {
+            int i = find(start, id);
+            if (i < 0) return;
+            int tail = this.size - i - 1;
+            System.arraycopy(this.starts, i + 1, this.starts, i, tail);
+            System.arraycopy(this.ends, i + 1, this.ends, i, tail);
+            System.arraycopy(this.ids, i + 1, this.ids, i, tail);
+            this.size--;
+            updateMaxEnds(i);
+        }
+
+        synchronized boolean overlaps(long start, long end) {
+            // the slots starting before end, one of them overlaps if the furthest end is after start
+            int before = firstStartAtOrAfter(end);
+            return before > 0 && this.maxEnds[before - 1] > start;
+        }
+
+        // the slots which may end after start, up to the first one starting at end
+        synchronized boolean overlapsOther(long start, long end, long id) {
+            for (int i = firstMaxEndAfter(start); i < this.size && this.starts[i] < end; i++) {
+                if (this.ends[i] > start && this.ids[i] != id) return true;
+            }
+            return false;
+        }
+
+        synchronized long[] freeIntervals(long from, long to, long minLength) {
+            long min = Math.max(minLength, 1);
+            long[] free = new long[8];
+            int count = 0;
+            long cursor = from;
+            // first slot which may end after from
+            int i = firstMaxEndAfter(from);
+            for (; i < this.size && this.starts[i] < to; i++) {
+                if (this.starts[i] > cursor) {
+                    if (this.starts[i] - cursor >= min) {
+                        if (count + 2 > free.length) free = Arrays.copyOf(free, free.length * 2);
+                        free[count++] = cursor;
+                        free[count++] = this.starts[i];
+                    }
+                }
+                cursor = Math.max(cursor, this.ends[i]);
+            }
+            if (to - cursor >= min) {
+                if (count + 2 > free.length) free = Arrays.copyOf(free, free.length + 2);
+                free[count++] = cursor;
+                free[count++] = to;
+            }
+            return Arrays.copyOf(free, count);
+        }
+
+        private void updateMaxEnds(int from) {
+            long max = from > 0 ? this.maxEnds[from - 1] : Long.MIN_VALUE;
+            for (int i = from; i < this.size; i++) {
+                max = Math.max(max, this.ends[i]);
+                this.maxEnds[i] = max;
+            }
+        }
+
+        // index of (start, id), or -(insertion point) - 1
+        private int find(long start, long id) {
+            int low = 0, high = this.size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = this.starts[mid] != start ? Long.compare(this.starts[mid], start) : Long.compare(this.ids[mid], id);
+                if (cmp < 0) low = mid + 1;
+                else if (cmp > 0) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+
+        private int firstStartAtOrAfter(long time) {
+            int low = 0, high = this.size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.starts[mid] < time) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        private int firstMaxEndAfter(long time) {
+            int low = 0, high = this.size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.maxEnds[mid] <= time) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
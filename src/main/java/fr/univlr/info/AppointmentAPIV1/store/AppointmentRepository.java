@@ -1,16 +1,81 @@
 package fr.univlr.info.AppointmentAPIV1.store;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.web.bind.annotation.PathVariable;
-import java.util.Date;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
+// the queries declared here run in read-only transactions (like the finders of SimpleJpaRepository), the writes
+// keep the read-write transactions of SimpleJpaRepository : no readOnly at the interface level, the redeclared
+// and inherited writes would get it too (flush mode MANUAL, nothing written outside an outer transaction)
 public interface AppointmentRepository extends JpaRepository<Appointment,Long> {
-    @Query("SELECT appointment from Appointment appointment WHERE  (:startDate <= appointment.endDate  and :startDate >= appointment.startDate) or (:endDate >= appointment.startDate  and :endDate <= appointment.endDate) ")
-    List<Appointment> findAppointmentByDate(Date startDate, Date endDate);
-    List<Appointment> findByDoctorContains(@PathVariable("name") String name);
-    @Query("SELECT a from Appointment a where a.startDate > :date ")
-    List<Appointment> retrieveAppointmentsByDate(Date date);
-   }
+    String CACHE = "appointments";
+    String DOCTOR_CACHE = "doctorAppointments";
+    // the listings are read as projections, no entity is managed (nor snapshotted for dirty checking)
+    String SUMMARY = "SELECT new fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary(a.id, a.doctor, a.startDate, a.endDate, a.patient) from Appointment a ";
+
+    // the per doctor listings (projections) are cached here, every write evicts them ; the single appointments
+    // are cached by JpaAppointmentStore, as detached copies
+    @Override
+    @CacheEvict(cacheNames = DOCTOR_CACHE, allEntries = true)
+    <S extends Appointment> S save(S appointment);
+    @Override
+    @CacheEvict(cacheNames = DOCTOR_CACHE, allEntries = true)
+    <S extends Appointment> List<S> saveAll(Iterable<S> appointments);
+    @Override
+    @CacheEvict(cacheNames = DOCTOR_CACHE, allEntries = true)
+    void deleteById(Long id);
+    @Override
+    @CacheEvict(cacheNames = DOCTOR_CACHE, allEntries = true)
+    void deleteAll();
+
+    // appointments of the doctor intersecting [startDate, endDate[, served by idx_appointment_doctor_range
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    @Query("SELECT a from Appointment a where a.doctor = :doctor and a.startDate < :endDate and a.endDate > :startDate")
+    List<Appointment> findByDoctorAndRange(String doctor, LocalDateTime startDate, LocalDateTime endDate);
+    // through the foreign key (idx_appointment_doctor_id), the doctor's row is the only one read from doctor
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = DOCTOR_CACHE, key = DoctorRepository.NAME_KEY)
+    @Query(SUMMARY + "join a.doctorObj d where d.name = :name order by a.id")
+    List<AppointmentSummary> findByDoctorObjName(String name);
+    @Transactional(readOnly = true)
+    boolean existsByDoctor(String doctor);
+    @Transactional(readOnly = true)
+    @Query(SUMMARY + "order by a.id")
+    List<AppointmentSummary> findAllSummaries();
+    @Transactional(readOnly = true)
+    @Query(SUMMARY + "where a.startDate > :date ")
+    List<AppointmentSummary> retrieveAppointmentsByDate(LocalDateTime date);
+
+    // keyset pagination, see AppointmentController.all
+    @Transactional(readOnly = true)
+    @Query(SUMMARY + "where a.id > :id order by a.id")
+    List<AppointmentSummary> findByIdGreaterThanOrderByIdAsc(Long id, Pageable page);
+    @Transactional(readOnly = true)
+    @Query(SUMMARY + "where a.startDate > :date and a.id > :id order by a.id")
+    List<AppointmentSummary> findByStartDateAfterAndIdGreaterThanOrderByIdAsc(LocalDateTime date, Long id, Pageable page);
+
+    // cursors for the streaming mode, they must be consumed inside a transaction and closed
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SUMMARY + "order by a.id")
+    Stream<AppointmentSummary> streamAll();
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SUMMARY + "where a.startDate > :date order by a.id")
+    Stream<AppointmentSummary> streamAppointmentsAfter(LocalDateTime date);
+}
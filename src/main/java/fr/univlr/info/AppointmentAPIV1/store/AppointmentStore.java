@@ -0,0 +1,48 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Where the appointments live : the JPA repository ({@link JpaAppointmentStore}, the default) or the in-process
+ * columnar store ({@link ColumnarAppointmentStore}, profile {@code columnar}). The transactions are the callers' ones.
+ */
+public interface AppointmentStore {
+    List<AppointmentSummary> findAll();
+
+    // appointments starting after the date
+    List<AppointmentSummary> retrieveAppointmentsByDate(LocalDateTime date);
+
+    // keyset page : at most limit appointments whose id is greater than afterId (starting after the date if not null), by id
+    List<AppointmentSummary> findPage(LocalDateTime date, long afterId, int limit);
+
+    // every appointment (starting after the date if not null) by id, without building the whole list
+    void forEach(LocalDateTime date, Consumer<AppointmentSummary> action);
+
+    List<AppointmentSummary> findByDoctor(String doctor);
+
+    // appointments of the doctor intersecting [start, end[
+    List<Appointment> findByDoctorAndRange(String doctor, LocalDateTime start, LocalDateTime end);
+
+    boolean existsByDoctor(String doctor);
+
+    Optional<Appointment> findById(Long id);
+
+    /**
+     * Inserts the appointment if it has no id (the id and version are set on it), otherwise replaces the stored one,
+     * provided it is still at the same version ({@link org.springframework.dao.OptimisticLockingFailureException} if not).
+     */
+    Appointment save(Appointment appt);
+
+    // bulk insert of new appointments
+    void saveAll(List<Appointment> appts);
+
+    void deleteById(Long id);
+
+    void deleteAll();
+}
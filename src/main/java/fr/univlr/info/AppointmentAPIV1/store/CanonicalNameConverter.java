@@ -0,0 +1,39 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.NameDictionary;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * The doctor names read from the database are the canonical instances (see {@link NameDictionary}), not one copy
+ * per row. Only for the doctor names : they are bounded by the doctor table (the appointments reference it).
+ */
+@Converter
+public class CanonicalNameConverter implements AttributeConverter<String, String> {
+    @Override
+    public String convertToDatabaseColumn(String name) {
+        return name;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String column) {
+        return NameDictionary.DOCTORS.canonical(column);
+    }
+
+    /**
+     * The patient names read from the database, as shared instances ({@link NameDictionary#shared}).
+     */
+    @Converter
+    public static class Patient implements AttributeConverter<String, String> {
+        @Override
+        public String convertToDatabaseColumn(String name) {
+            return name;
+        }
+
+        @Override
+        public String convertToEntityAttribute(String column) {
+            return NameDictionary.shared(column);
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import fr.univlr.info.AppointmentAPIV1.model.NameDictionary;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-process appointment store (profile {@code columnar}), for tens of millions of appointments without the
+ * heap they would take as entities. The doctors stay in the database. Nothing is persisted, it starts empty,
+ * unless the {@code wal} profile is active too : the changes are then logged by {@link WriteAheadLog} before
+ * they are acknowledged, and replayed at startup.
+ * <p>
+ * The rows are kept in id order (the ids are generated here) in off-heap segments of {@value #SEGMENT_ROWS} rows.
+ * A segment is columnar : the ids, starts, ends and versions are parallel long arrays, followed by the int codes
+ * of the doctor and patient names ({@link NameDictionary}), 40 bytes per row. A deleted row becomes a tombstone,
+ * the segments are compacted once the tombstones are the majority. Dates are stored as local milliseconds
+ * (epoch of the LocalDateTime read as UTC), they round trip exactly and compare like the dates.
+ * <p>
+ * Readers in parallel. A write is validated and logged first (one writer at a time, against the rows and the
+ * changes logged but not applied yet), then applied once durable : readers never see a change the log could
+ * lose, and a change the log refused is never applied. The writers wait for the log to be forced concurrently,
+ * so one force covers all of them, and the first one woken applies the pending changes in log order.
+ * The conflict index and the change counter are fed with the applied changes, like by the JPA entity listeners.
+ */
+@Component
+@Profile("columnar")
+// even with lazy initialization (fast-start profile), the log is replayed before the first request is accepted
+@Lazy(false)
+class ColumnarAppointmentStore implements AppointmentStore {
+    static final int SEGMENT_SHIFT = 16;
+    static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+    // forEach hands the rows over by chunks, the read lock isn't held while the caller writes them
+    static final int CHUNK_ROWS = 1000;
+
+    private static final int ROW_MASK = SEGMENT_ROWS - 1;
+    // column offsets in a segment
+    private static final int ID = 0;
+    private static final int START = ID + SEGMENT_ROWS * Long.BYTES;
+    private static final int END = START + SEGMENT_ROWS * Long.BYTES;
+    private static final int VERSION = END + SEGMENT_ROWS * Long.BYTES;
+    private static final int DOCTOR = VERSION + SEGMENT_ROWS * Long.BYTES;
+    private static final int PATIENT = DOCTOR + SEGMENT_ROWS * Integer.BYTES;
+    private static final int SEGMENT_BYTES = PATIENT + SEGMENT_ROWS * Integer.BYTES;
+
+    private static final int TOMBSTONE = Integer.MIN_VALUE;
+    private static final int NO_NAME = NameDictionary.NO_CODE;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final AppointmentIntervalIndex index;
+    private final EntityChangeCounter changes;
+    // null without the wal profile
+    private final WriteAheadLog wal;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // validates and logs the writes, one at a time
+    private final Lock sequencer = new ReentrantLock();
+    // logged, not applied yet, in log order (added under the sequencer, applied and removed under the write lock)
+    private final Deque<Change> pending = new ConcurrentLinkedDeque<>();
+    // log position of the last change applied (a sequence number without the log)
+    private long applied;
+    // dictionary encoding of the doctor and patient names : each distinct name is kept once on the heap, the rows
+    // hold its code. Every stored name needs one, so it isn't bounded, codes are only reused after deleteAll.
+    // Written under the write lock, read under the read lock.
+    private final NameDictionary names = new NameDictionary(Integer.MAX_VALUE);
+    private List<ByteBuffer> segments = new ArrayList<>();
+    // rows in use, tombstones included
+    private int size;
+    private int tombstones;
+    // last id of the applied rows, and last id handed out (under the sequencer)
+    private long lastId;
+    private long nextId;
+
+    ColumnarAppointmentStore(AppointmentIntervalIndex index, EntityChangeCounter changes, ObjectProvider<WriteAheadLog> wal) {
+        this.index = index;
+        this.changes = changes;
+        this.wal = wal.getIfAvailable();
+    }
+
+    // the rows are restored before the first request, the log isn't written back while replayed
+    @PostConstruct
+    void replay() {
+        if (this.wal == null) return;
+        this.lock.writeLock().lock();
+        try {
+            this.wal.open(new Replay(), this::snapshot);
+            this.applied = this.wal.position();
+            this.nextId = this.lastId;
+            // straight from the columns, no entity per row
+            this.index.clear();
+            for (int row = 0; row < this.size; row++) {
+                if (live(row) && start(row) != NO_DATE && end(row) != NO_DATE) {
+                    this.index.addMillis(longAt(this.segments, ID, row), this.names.name(doctorCode(row)),
+                            AppointmentDates.toEpochMillis(decode(start(row))), AppointmentDates.toEpochMillis(decode(end(row))));
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<AppointmentSummary> findAll() {
+        return read(() -> scan(row -> true));
+    }
+
+    @Override
+    public List<AppointmentSummary> retrieveAppointmentsByDate(LocalDateTime date) {
+        long after = encode(date);
+        return read(() -> scan(row -> start(row) > after));
+    }
+
+    @Override
+    public List<AppointmentSummary> findPage(LocalDateTime date, long afterId, int limit) {
+        long after = date != null ? encode(date) : NO_DATE;
+        return read(() -> {
+            List<AppointmentSummary> page = new ArrayList<>(Math.min(limit, CHUNK_ROWS));
+            for (int row = rowAfter(afterId); row < this.size && page.size() < limit; row++) {
+                if (live(row) && (date == null || start(row) > after)) page.add(summary(row));
+            }
+            return page;
+        });
+    }
+
+    @Override
+    public void forEach(LocalDateTime date, Consumer<AppointmentSummary> action) {
+        long after = 0;
+        List<AppointmentSummary> chunk;
+        do {
+            chunk = findPage(date, after, CHUNK_ROWS);
+            chunk.forEach(action);
+            if (!chunk.isEmpty()) after = chunk.get(chunk.size() - 1).getId();
+        } while (chunk.size() == CHUNK_ROWS);
+    }
+
+    @Override
+    public List<AppointmentSummary> findByDoctor(String doctor) {
+        return read(() -> {
+            int code = this.names.existingCode(doctor);
+            return code == NO_NAME ? Collections.emptyList() : scan(row -> doctorCode(row) == code);
+        });
+    }
+
+    @Override
+    public List<Appointment> findByDoctorAndRange(String doctor, LocalDateTime start, LocalDateTime end) {
+        long from = encode(start), to = encode(end);
+        return read(() -> {
+            int code = this.names.existingCode(doctor);
+            List<Appointment> found = new ArrayList<>();
+            if (code == NO_NAME) return found;
+            for (int row = 0; row < this.size; row++) {
+                if (doctorCode(row) == code && start(row) < to && end(row) > from) found.add(appointment(row));
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public boolean existsByDoctor(String doctor) {
+        return read(() -> {
+            int code = this.names.existingCode(doctor);
+            if (code == NO_NAME) return false;
+            for (int row = 0; row < this.size; row++) {
+                if (doctorCode(row) == code) return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public Optional<Appointment> findById(Long id) {
+        return read(() -> {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(appointment(row));
+        });
+    }
+
+    @Override
+    public Appointment save(Appointment appt) {
+        Change change;
+        this.sequencer.lock();
+        try {
+            if (appt.getId() == null) {
+                change = Change.put(this.nextId + 1, 0, appt);
+            } else {
+                Long version = read(() -> loggedVersion(appt.getId()));
+                if (version == null || !version.equals(appt.getVersion()))
+                    throw new ObjectOptimisticLockingFailureException(Appointment.class, appt.getId());
+                change = Change.put(appt.getId(), version + 1, appt);
+            }
+            log(Collections.singletonList(change));
+            if (appt.getId() == null) this.nextId++;
+        } finally {
+            this.sequencer.unlock();
+        }
+        awaitApplied(change.position);
+        if (appt.getId() == null) {
+            appt.setId(change.id);
+            appt.setVersion(0L);
+            return appt;
+        }
+        return change.appointment();
+    }
+
+    @Override
+    public void saveAll(List<Appointment> appts) {
+        List<Change> batch = new ArrayList<>(appts.size());
+        this.sequencer.lock();
+        try {
+            for (Appointment appt : appts) {
+                batch.add(Change.put(this.nextId + batch.size() + 1, 0, appt));
+            }
+            log(batch);
+            this.nextId += batch.size();
+        } finally {
+            this.sequencer.unlock();
+        }
+        if (batch.isEmpty()) return;
+        awaitApplied(batch.get(batch.size() - 1).position);
+        for (int i = 0; i < appts.size(); i++) {
+            appts.get(i).setId(batch.get(i).id);
+            appts.get(i).setVersion(0L);
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        Change change;
+        this.sequencer.lock();
+        try {
+            if (id == null || read(() -> loggedVersion(id)) == null)
+                throw new EmptyResultDataAccessException("No appointment with id " + id + " exists", 1);
+            change = Change.delete(id);
+            log(Collections.singletonList(change));
+        } finally {
+            this.sequencer.unlock();
+        }
+        awaitApplied(change.position);
+    }
+
+    @Override
+    public void deleteAll() {
+        Change change = Change.clear();
+        this.sequencer.lock();
+        try {
+            log(Collections.singletonList(change));
+        } finally {
+            this.sequencer.unlock();
+        }
+        awaitApplied(change.position);
+    }
+
+    // version of the appointment once the changes logged so far are applied, null if it won't exist (read lock held)
+    private Long loggedVersion(long id) {
+        for (Iterator<Change> changes = this.pending.descendingIterator(); changes.hasNext(); ) {
+            Change change = changes.next();
+            if (change.type == Change.Type.CLEAR) return null;
+            if (change.id == id) return change.type == Change.Type.DELETE ? null : change.version;
+        }
+        int row = rowOf(id);
+        return row < 0 ? null : longAt(this.segments, VERSION, row);
+    }
+
+    // under the sequencer : logs the changes (all or none), they are then pending
+    private void log(List<Change> batch) {
+        if (this.wal != null) {
+            List<ByteBuffer> records = new ArrayList<>(batch.size());
+            for (Change change : batch) records.add(change.record());
+            long[] positions = this.wal.append(records);
+            for (int i = 0; i < positions.length; i++) batch.get(i).position = positions[i];
+        } else {
+            long last = this.pending.isEmpty() ? this.applied : this.pending.peekLast().position;
+            for (Change change : batch) change.position = ++last;
+        }
+        this.pending.addAll(batch);
+    }
+
+    // once the change is durable, the pending changes up to it are applied (by this thread or a concurrent one)
+    private void awaitApplied(long position) {
+        if (this.wal != null) this.wal.awaitDurable(position);
+        this.lock.writeLock().lock();
+        try {
+            Change change;
+            while ((change = this.pending.peekFirst()) != null && change.position <= position) {
+                apply(change);
+                this.applied = change.position;
+                this.pending.pollFirst();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Change change) {
+        switch (change.type) {
+            case PUT:
+                restore(change.id, change.version, change.start, change.end, change.doctor, change.patient);
+                if (change.start != NO_DATE && change.end != NO_DATE) {
+                    this.index.addMillis(change.id, change.doctor, AppointmentDates.toEpochMillis(decode(change.start)),
+                            AppointmentDates.toEpochMillis(decode(change.end)));
+                } else {
+                    this.index.remove(change.id);
+                }
+                break;
+            case DELETE:
+                int row = rowOf(change.id);
+                if (row >= 0) tombstone(row);
+                this.index.remove(change.id);
+                break;
+            case CLEAR:
+                clear();
+                this.index.clear();
+                break;
+        }
+        this.changes.changed(Appointment.class);
+    }
+
+    // a row in place (a deleted one comes back), or a new one kept in id order : appended as the ids grow, or
+    // inserted before the rows of greater ids if it comes out of order (replayed log)
+    private void restore(long id, long version, long start, long end, String doctor, String patient) {
+        int row = rowAfter(id - 1);
+        if (row < this.size && longAt(this.segments, ID, row) == id) {
+            if (!live(row)) this.tombstones--;
+        } else {
+            if (this.size == (long) this.segments.size() * SEGMENT_ROWS) this.segments.add(newSegment());
+            for (int from = this.size - 1; from >= row; from--) {
+                copyRow(this.segments, from, this.segments, from + 1);
+            }
+            this.size++;
+        }
+        write(this.segments, row, id, version, start, end, doctor, patient);
+        this.lastId = Math.max(this.lastId, id);
+    }
+
+    private void tombstone(int row) {
+        this.segments.get(row >>> SEGMENT_SHIFT).putInt(DOCTOR + (row & ROW_MASK) * Integer.BYTES, TOMBSTONE);
+        this.tombstones++;
+        compactIfSparse();
+    }
+
+    // the ids aren't reset, they are never reused
+    private void clear() {
+        this.segments = new ArrayList<>();
+        this.size = 0;
+        this.tombstones = 0;
+        this.names.clear();
+    }
+
+    // the live rows as of the last change applied : the segments are copied under the read lock (the writers only
+    // wait for the copy), the file is written outside of it
+    private void snapshot(WriteAheadLog.SnapshotWriter out) throws IOException {
+        List<ByteBuffer> copy = new ArrayList<>();
+        List<String> names;
+        int size;
+        long position, lastId;
+        this.lock.readLock().lock();
+        try {
+            for (ByteBuffer segment : this.segments) {
+                ByteBuffer source = segment.duplicate();
+                source.clear();
+                copy.add(newSegment().put(source));
+            }
+            names = this.names.names();
+            size = this.size;
+            position = this.applied;
+            lastId = this.lastId;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        out.begin(position, lastId);
+        for (int row = 0; row < size; row++) {
+            int doctor = intAt(copy, DOCTOR, row), patient = intAt(copy, PATIENT, row);
+            if (doctor != TOMBSTONE) {
+                out.put(longAt(copy, ID, row), longAt(copy, VERSION, row), longAt(copy, START, row), longAt(copy, END, row),
+                        doctor == NO_NAME ? null : names.get(doctor), patient == NO_NAME ? null : names.get(patient));
+            }
+        }
+    }
+
+    // once the tombstones are the majority, the live rows are copied to new segments (still in id order)
+    private void compactIfSparse() {
+        if (this.tombstones < SEGMENT_ROWS || this.tombstones * 2 < this.size) return;
+        List<ByteBuffer> compacted = new ArrayList<>();
+        int to = 0;
+        for (int from = 0; from < this.size; from++) {
+            if (!live(from)) continue;
+            if (to == compacted.size() * SEGMENT_ROWS) compacted.add(newSegment());
+            copyRow(this.segments, from, compacted, to++);
+        }
+        this.segments = compacted;
+        this.size = to;
+        this.tombstones = 0;
+    }
+
+    private void write(List<ByteBuffer> segments, int row, long id, long version, long start, long end, String doctor, String patient) {
+        putLong(segments, ID, row, id);
+        putLong(segments, START, row, start);
+        putLong(segments, END, row, end);
+        putLong(segments, VERSION, row, version);
+        putInt(segments, DOCTOR, row, this.names.code(doctor));
+        putInt(segments, PATIENT, row, this.names.code(patient));
+    }
+
+    private static void copyRow(List<ByteBuffer> from, int fromRow, List<ByteBuffer> to, int toRow) {
+        putLong(to, ID, toRow, longAt(from, ID, fromRow));
+        putLong(to, START, toRow, longAt(from, START, fromRow));
+        putLong(to, END, toRow, longAt(from, END, fromRow));
+        putLong(to, VERSION, toRow, longAt(from, VERSION, fromRow));
+        putInt(to, DOCTOR, toRow, intAt(from, DOCTOR, fromRow));
+        putInt(to, PATIENT, toRow, intAt(from, PATIENT, fromRow));
+    }
+
+    private static ByteBuffer newSegment() {
+        return ByteBuffer.allocateDirect(SEGMENT_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    // first row whose id is greater than the given one (size if there is none)
+    private int rowAfter(long id) {
+        int low = 0, high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (longAt(this.segments, ID, mid) <= id) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // row of the live appointment with this id, -1 if there is none
+    private int rowOf(Long id) {
+        if (id == null) return -1;
+        int row = rowAfter(id - 1);
+        return row < this.size && longAt(this.segments, ID, row) == id && live(row) ? row : -1;
+    }
+
+    private List<AppointmentSummary> scan(RowFilter filter) {
+        List<AppointmentSummary> found = new ArrayList<>();
+        for (int row = 0; row < this.size; row++) {
+            if (live(row) && filter.accept(row)) found.add(summary(row));
+        }
+        return found;
+    }
+
+    private AppointmentSummary summary(int row) {
+        return new AppointmentSummary(longAt(this.segments, ID, row), this.names.name(doctorCode(row)),
+                decode(start(row)), decode(end(row)), this.names.name(intAt(this.segments, PATIENT, row)));
+    }
+
+    private Appointment appointment(int row) {
+        Appointment appt = new Appointment(this.names.name(doctorCode(row)), decode(start(row)), decode(end(row)),
+                this.names.name(intAt(this.segments, PATIENT, row)));
+        appt.setId(longAt(this.segments, ID, row));
+        appt.setVersion(longAt(this.segments, VERSION, row));
+        return appt;
+    }
+
+    private boolean live(int row) {
+        return doctorCode(row) != TOMBSTONE;
+    }
+
+    private int doctorCode(int row) {
+        return intAt(this.segments, DOCTOR, row);
+    }
+
+    private long start(int row) {
+        return longAt(this.segments, START, row);
+    }
+
+    private long end(int row) {
+        return longAt(this.segments, END, row);
+    }
+
+    private static long longAt(List<ByteBuffer> segments, int column, int row) {
+        return segments.get(row >>> SEGMENT_SHIFT).getLong(column + (row & ROW_MASK) * Long.BYTES);
+    }
+
+    private static int intAt(List<ByteBuffer> segments, int column, int row) {
+        return segments.get(row >>> SEGMENT_SHIFT).getInt(column + (row & ROW_MASK) * Integer.BYTES);
+    }
+
+    private static void putLong(List<ByteBuffer> segments, int column, int row, long value) {
+        segments.get(row >>> SEGMENT_SHIFT).putLong(column + (row & ROW_MASK) * Long.BYTES, value);
+    }
+
+    private static void putInt(List<ByteBuffer> segments, int column, int row, int value) {
+        segments.get(row >>> SEGMENT_SHIFT).putInt(column + (row & ROW_MASK) * Integer.BYTES, value);
+    }
+
+    static long encode(LocalDateTime date) {
+        return date != null ? date.toInstant(ZoneOffset.UTC).toEpochMilli() : NO_DATE;
+    }
+
+    static LocalDateTime decode(long millis) {
+        if (millis == NO_DATE) return null;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        this.lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private interface RowFilter {
+        boolean accept(int row);
+    }
+
+    // a write, logged then applied
+    private static final class Change {
+        enum Type { PUT, DELETE, CLEAR }
+
+        final Type type;
+        final long id, version, start, end;
+        final String doctor, patient;
+        long position;
+
+        private Change(Type type, long id, long version, long start, long end, String doctor, String patient) {
+            this.type = type;
+            this.id = id;
+            this.version = version;
+            this.start = start;
+            this.end = end;
+            this.doctor = doctor;
+            this.patient = patient;
+        }
+
+        static Change put(long id, long version, Appointment appt) {
+            return new Change(Type.PUT, id, version, encode(appt.getStart()), encode(appt.getEnd()), appt.getDoctor(), appt.getPatient());
+        }
+
+        static Change delete(long id) {
+            return new Change(Type.DELETE, id, 0, NO_DATE, NO_DATE, null, null);
+        }
+
+        static Change clear() {
+            return new Change(Type.CLEAR, 0, 0, NO_DATE, NO_DATE, null, null);
+        }
+
+        ByteBuffer record() {
+            switch (this.type) {
+                case PUT:
+                    return WriteAheadLog.putRecord(this.id, this.version, this.start, this.end, this.doctor, this.patient);
+                case DELETE:
+                    return WriteAheadLog.deleteRecord(this.id);
+                default:
+                    return WriteAheadLog.clearRecord();
+            }
+        }
+
+        Appointment appointment() {
+            Appointment appt = new Appointment(this.doctor, decode(this.start), decode(this.end), this.patient);
+            appt.setId(this.id);
+            appt.setVersion(this.version);
+            return appt;
+        }
+    }
+
+    // the logged changes, applied under the write lock by replay()
+    private final class Replay implements WriteAheadLog.Records {
+        @Override
+        public void put(long id, long version, long start, long end, String doctor, String patient) {
+            restore(id, version, start, end, doctor, patient);
+        }
+
+        @Override
+        public void delete(long id) {
+            int row = rowOf(id);
+            if (row >= 0) tombstone(row);
+        }
+
+        @Override
+        public void clear() {
+            ColumnarAppointmentStore.this.clear();
+        }
+
+        @Override
+        public void lastId(long id) {
+            lastId = Math.max(lastId, id);
+        }
+    }
+}
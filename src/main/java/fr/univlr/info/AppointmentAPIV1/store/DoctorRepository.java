@@ -1,7 +1,21 @@
 package fr.univlr.info.AppointmentAPIV1.store;
 import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface DoctorRepository extends JpaRepository<Doctor,Long> {
+    String CACHE = "doctors";
+    // the cached entries keep the canonical name, not the copy of the request which missed
+    String NAME_KEY = "T(fr.univlr.info.AppointmentAPIV1.model.NameDictionary).DOCTORS.existing(#p0)";
+
+    // managed, not cached : the cache (of detached copies) is DoctorService's
+    @Transactional(readOnly = true)
     Doctor findByName(String name);
+    @Override
+    @CacheEvict(cacheNames = CACHE, key = "#p0.name")
+    <S extends Doctor> S save(S doctor);
+    @Override
+    @CacheEvict(cacheNames = CACHE, key = "#p0.name")
+    void delete(Doctor doctor);
 }
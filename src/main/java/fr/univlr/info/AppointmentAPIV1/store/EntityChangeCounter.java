@@ -0,0 +1,68 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the changes of each entity type, the ETags of the collections are derived from it.
+ * Through its {@link Listener}, the counter moves when Hibernate flushes a change and once more when
+ * the transaction is over : a listing read in between (old rows, new count) can't keep its ETag.
+ */
+@Component
+public class EntityChangeCounter {
+    // the counters restart with the application, the boot time tells the two runs apart
+    private final String boot = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Class<?>, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    // also called by the stores which don't go through JPA (see ColumnarAppointmentStore)
+    void changed(Class<?> entityType) {
+        AtomicLong counter = counter(entityType);
+        counter.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    counter.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Current version of the whole set of entities of this type, changes with any insert, update or delete.
+     */
+    public String version(Class<?> entityType) {
+        return this.boot + "." + counter(entityType).get();
+    }
+
+    private AtomicLong counter(Class<?> entityType) {
+        return this.counters.computeIfAbsent(entityType, type -> new AtomicLong());
+    }
+
+    /**
+     * The JPA entity listener of the counted entities. Hibernate creates its own instances of the listeners
+     * (constructor injected by the Spring bean container), they count on the bean the controllers read.
+     */
+    public static class Listener {
+        private final EntityChangeCounter counter;
+
+        public Listener(EntityChangeCounter counter) {
+            this.counter = counter;
+        }
+
+        @PostPersist
+        @PostUpdate
+        @PostRemove
+        void onChange(Object entity) {
+            this.counter.changed(entity.getClass());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The appointments in the database, through {@link AppointmentRepository} (and its caches).
+ * The single appointments are cached as detached copies, and each reader gets its own : a cached entity would
+ * be shared by the requests (mutable, with a lazy doctor bound to the session it was read in).
+ */
+@Component
+@Profile("!columnar")
+class JpaAppointmentStore implements AppointmentStore {
+    static final int CHUNK_SIZE = 500;
+
+    private final AppointmentRepository repository;
+    private final EntityManager entityManager;
+    private final AppointmentIntervalIndex index;
+    private final Cache cache;
+
+    JpaAppointmentStore(AppointmentRepository repository, EntityManager entityManager, AppointmentIntervalIndex index,
+                        CacheManager cacheManager) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.index = index;
+        this.cache = cacheManager.getCache(AppointmentRepository.CACHE);
+    }
+
+    // appointments already stored (persistent datasource) must be known by the conflict index
+    @PostConstruct
+    void loadIndex() {
+        this.index.rebuild(this.repository.findAll());
+    }
+
+    @Override
+    public List<AppointmentSummary> findAll() {
+        return this.repository.findAllSummaries();
+    }
+
+    @Override
+    public List<AppointmentSummary> retrieveAppointmentsByDate(LocalDateTime date) {
+        return this.repository.retrieveAppointmentsByDate(date);
+    }
+
+    @Override
+    public List<AppointmentSummary> findPage(LocalDateTime date, long afterId, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, limit);
+        return date != null
+                ? this.repository.findByStartDateAfterAndIdGreaterThanOrderByIdAsc(date, afterId, pageRequest)
+                : this.repository.findByIdGreaterThanOrderByIdAsc(afterId, pageRequest);
+    }
+
+    // the cursor must be read inside the caller's transaction
+    @Override
+    public void forEach(LocalDateTime date, Consumer<AppointmentSummary> action) {
+        try (Stream<AppointmentSummary> appts = date != null
+                ? this.repository.streamAppointmentsAfter(date)
+                : this.repository.streamAll()) {
+            appts.forEach(action);
+        }
+    }
+
+    @Override
+    public List<AppointmentSummary> findByDoctor(String doctor) {
+        return this.repository.findByDoctorObjName(doctor);
+    }
+
+    @Override
+    public List<Appointment> findByDoctorAndRange(String doctor, LocalDateTime start, LocalDateTime end) {
+        return this.repository.findByDoctorAndRange(doctor, start, end);
+    }
+
+    @Override
+    public boolean existsByDoctor(String doctor) {
+        return this.repository.existsByDoctor(doctor);
+    }
+
+    @Override
+    public Optional<Appointment> findById(Long id) {
+        // a missing appointment is cached too (as null), until it is saved
+        Appointment cached = this.cache.get(id, () -> this.repository.findById(id).map(JpaAppointmentStore::copyOf).orElse(null));
+        return Optional.ofNullable(cached).map(JpaAppointmentStore::copyOf);
+    }
+
+    @Override
+    public Appointment save(Appointment appt) {
+        try {
+            Appointment saved = this.repository.save(appt);
+            this.cache.put(saved.getId(), copyOf(saved));
+            return saved;
+        } catch (OptimisticLockingFailureException e) {
+            // the cached copy is stale
+            if (appt.getId() != null) this.cache.evict(appt.getId());
+            throw e;
+        }
+    }
+
+    // flushed by chunks so that Hibernate sends JDBC batches, and cleared so that the persistence context stays small
+    @Override
+    public void saveAll(List<Appointment> appts) {
+        for (int from = 0; from < appts.size(); from += CHUNK_SIZE) {
+            this.repository.saveAll(appts.subList(from, Math.min(from + CHUNK_SIZE, appts.size())));
+            this.entityManager.flush();
+            this.entityManager.clear();
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        this.repository.deleteById(id);
+        this.cache.evict(id);
+    }
+
+    @Override
+    public void deleteAll() {
+        this.repository.deleteAll();
+        this.cache.clear();
+    }
+
+    // without the doctor entity, the name is enough outside of the store
+    private static Appointment copyOf(Appointment appt) {
+        Appointment copy = new Appointment(appt.getDoctor(), appt.getStart(), appt.getEnd(), appt.getPatient());
+        copy.setId(appt.getId());
+        copy.setVersion(appt.getVersion());
+        return copy;
+    }
+}
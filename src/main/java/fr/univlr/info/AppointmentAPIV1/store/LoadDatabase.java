@@ -1,6 +1,7 @@
 package fr.univlr.info.AppointmentAPIV1.store;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
 import fr.univlr.info.AppointmentAPIV1.model.Doctor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,9 +12,7 @@ import org.springframework.hateoas.config.EnableHypermediaSupport;
 import org.springframework.hateoas.config.HypermediaRestTemplateConfigurer;
 import org.springframework.web.client.RestTemplate;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDateTime;
 
 @Configuration
 @EnableHypermediaSupport(type = EnableHypermediaSupport.HypermediaType.HAL)
@@ -22,12 +21,8 @@ class LoadDatabase {
 
     private static final Logger log = LoggerFactory.getLogger(LoadDatabase.class);
 
-    public static Date parseDate(String date) {
-        try {
-            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm").parse(date);
-        } catch (ParseException e) {
-            return null;
-        }
+    public static LocalDateTime parseDate(String date) {
+        return AppointmentDates.parse(date);
     }
 
     @Bean
@@ -0,0 +1,33 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator of the entities : one sequence per entity, read with the pooled-lo optimizer so that
+ * a single sequence call hands out a whole block of ids (which also lets Hibernate batch the inserts).
+ * The block size is the {@value #INCREMENT_SIZE_SETTING} setting
+ * ({@code spring.jpa.properties.appointment.id.increment_size}).
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+    public static final String STRATEGY = "fr.univlr.info.AppointmentAPIV1.store.PooledSequenceGenerator";
+    public static final String INCREMENT_SIZE_SETTING = "appointment.id.increment_size";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object incrementSize = serviceRegistry.getService(ConfigurationService.class).getSettings().get(INCREMENT_SIZE_SETTING);
+        if (incrementSize != null && !params.containsKey(INCREMENT_PARAM)) {
+            params.setProperty(INCREMENT_PARAM, incrementSize.toString());
+        }
+        if (!params.containsKey(OPT_PARAM)) {
+            params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
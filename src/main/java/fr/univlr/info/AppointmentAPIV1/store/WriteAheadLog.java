@@ -0,0 +1,601 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durability of the columnar store (profile {@code wal}) : every change is appended to a log before it is
+ * acknowledged, the store is rebuilt from it at startup.
+ * <p>
+ * The log is a sequence of memory-mapped segment files ({@code log-<position>.wal}), a record is
+ * {@code [length][crc32c][type][payload]} and is identified by the position of its end in the whole log.
+ * The store appends its changes before applying them, an append only copies the records to the mapping, the
+ * callers then wait in {@link #awaitDurable(long)} : a single flusher thread forces the segments, one
+ * {@code msync} covering all the records appended in the meantime (group commit). At startup the records are replayed up to the first
+ * torn or corrupted one (a crash in the middle of an append), the rest of the segment is wiped.
+ * <p>
+ * Once {@code snapshot-every} bytes have been logged, the live rows are written to a snapshot
+ * ({@code snapshot-<position>.bin}, same records, atomically renamed once complete) and the segments it covers
+ * are deleted, so the replay never reads more than a snapshot and that many bytes of log.
+ */
+@Component
+@Profile("wal")
+public class WriteAheadLog implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final byte PUT = 1, DELETE = 2, CLEAR = 3, SNAPSHOT_END = 4;
+    // length and crc
+    private static final int HEADER = 2 * Integer.BYTES;
+    private static final int SNAPSHOT_MAGIC = 0x41505053;
+    private static final String SEGMENT_PREFIX = "log-", SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-", SNAPSHOT_SUFFIX = ".bin";
+
+    /**
+     * What the records are replayed into.
+     */
+    public interface Records {
+        void put(long id, long version, long start, long end, String doctor, String patient);
+
+        void delete(long id);
+
+        void clear();
+
+        // ids are never reused, even those of deleted appointments
+        void lastId(long id);
+    }
+
+    /**
+     * Writes the live rows to a snapshot, see {@link SnapshotWriter}.
+     */
+    public interface State {
+        void snapshot(SnapshotWriter out) throws IOException;
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final long snapshotEvery;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = this.lock.newCondition();
+    private final Condition forced = this.lock.newCondition();
+    private final List<Segment> segments = new ArrayList<>();
+    // segments written since the last force, the current one included
+    private final List<Segment> unforced = new ArrayList<>();
+    private Segment current;
+    private long written;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private State state;
+    private Thread flusher;
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("appt-wal-snapshot-"));
+    private long lastSnapshot;
+    private boolean snapshotting;
+
+    public WriteAheadLog(@Value("${appointment.wal.dir:data/wal}") String dir,
+                         @Value("${appointment.wal.segment-size-mb:64}") int segmentSizeMb,
+                         @Value("${appointment.wal.snapshot-every-mb:256}") int snapshotEveryMb) {
+        this.dir = Paths.get(dir);
+        this.segmentSize = segmentSizeMb << 20;
+        this.snapshotEvery = (long) snapshotEveryMb << 20;
+    }
+
+    /**
+     * Replays the last snapshot and the log into the records, then opens the log for appending.
+     */
+    public void open(Records target, State state) {
+        try {
+            Files.createDirectories(this.dir);
+            long covered = loadSnapshot(target);
+            List<Path> files = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            int replayed = 0;
+            for (int i = 0; i < files.size(); i++) {
+                Segment segment = Segment.map(files.get(i), this.segmentSize);
+                int end = replay(segment, covered, target, i == files.size() - 1);
+                replayed += segment.records;
+                this.segments.add(segment);
+                if (i == files.size() - 1) {
+                    segment.buffer.position(end);
+                    this.current = segment;
+                }
+            }
+            if (this.current == null) this.current = newSegment(covered);
+            this.written = this.durable = position();
+            this.lastSnapshot = covered;
+            this.state = state;
+            log.info("wal.open dir={} snapshot={} segments={} records={} position={}", this.dir, covered, this.segments.size(), replayed, this.written);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.flusher = new Thread(this::flushLoop, "appt-wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // current end of the log, once open() returned it only moves under the lock
+    public long position() {
+        this.lock.lock();
+        try {
+            return this.current.start + this.current.buffer.position();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // the records, encoded (and checked) before anything is appended, see append()
+    public static ByteBuffer putRecord(long id, long version, long start, long end, String doctor, String patient) {
+        return sealed(putPayload(id, version, start, end, doctor, patient));
+    }
+
+    public static ByteBuffer deleteRecord(long id) {
+        return sealed(record(DELETE, Long.BYTES).putLong(id));
+    }
+
+    public static ByteBuffer clearRecord() {
+        return sealed(record(CLEAR, 0));
+    }
+
+    /**
+     * Appends the records, all of them or none (if the log fails in the middle, it refuses any other append
+     * and the outcome of these ones is only known after a restart), returns the position of the end of each one.
+     */
+    public long[] append(List<ByteBuffer> records) {
+        for (ByteBuffer record : records) {
+            // the record and the end of segment marker must fit in a segment
+            if (record.remaining() + Integer.BYTES > this.segmentSize) throw new IllegalArgumentException("record of " + record.remaining() + " bytes");
+        }
+        long[] positions = new long[records.size()];
+        this.lock.lock();
+        try {
+            if (this.closed) throw new IllegalStateException("write-ahead log closed");
+            if (this.failure != null) throw new UncheckedIOException("write-ahead log failure", this.failure);
+            for (int i = 0; i < positions.length; i++) {
+                ByteBuffer record = records.get(i).duplicate();
+                if (this.current.buffer.remaining() < record.remaining() + Integer.BYTES) {
+                    this.current.buffer.putInt(0);
+                    try {
+                        this.current = newSegment(this.current.start + this.segmentSize);
+                    } catch (IOException e) {
+                        this.failure = e;
+                        this.forced.signalAll();
+                        throw new UncheckedIOException("write-ahead log failure", e);
+                    }
+                }
+                this.current.buffer.put(record);
+                if (!this.unforced.contains(this.current)) this.unforced.add(this.current);
+                positions[i] = this.current.start + this.current.buffer.position();
+            }
+            if (positions.length > 0) this.written = positions[positions.length - 1];
+            this.appended.signal();
+            if (!this.snapshotting && this.written - this.lastSnapshot >= this.snapshotEvery) {
+                this.snapshotting = true;
+                this.snapshotter.execute(this::snapshot);
+            }
+            return positions;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the log is forced up to the position.
+     */
+    public void awaitDurable(long position) {
+        this.lock.lock();
+        try {
+            while (this.durable < position) {
+                if (this.failure != null) throw new UncheckedIOException("write-ahead log failure", this.failure);
+                this.forced.awaitUninterruptibly();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // group commit : one force for all the records appended since the previous one
+    private void flushLoop() {
+        while (true) {
+            long target;
+            List<Segment> toForce;
+            this.lock.lock();
+            try {
+                while (this.written == this.durable && !this.closed) this.appended.awaitUninterruptibly();
+                if (this.written == this.durable) return;
+                target = this.written;
+                toForce = new ArrayList<>(this.unforced);
+                this.unforced.clear();
+                this.unforced.add(this.current);
+            } finally {
+                this.lock.unlock();
+            }
+            IOException error = null;
+            try {
+                for (Segment segment : toForce) segment.buffer.force();
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+            }
+            this.lock.lock();
+            try {
+                if (error != null) {
+                    log.error("wal.force failed, the changes are no longer acknowledged", error);
+                    this.failure = error;
+                } else {
+                    this.durable = target;
+                }
+                this.forced.signalAll();
+                if (error != null) return;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void snapshot() {
+        Path tmp = this.dir.resolve(SNAPSHOT_PREFIX + "tmp");
+        try {
+            long position;
+            int rows;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter out = new SnapshotWriter(channel);
+                this.state.snapshot(out);
+                out.finish();
+                channel.force(true);
+                position = out.position;
+                rows = out.rows;
+            }
+            Files.move(tmp, this.dir.resolve(name(SNAPSHOT_PREFIX, position, SNAPSHOT_SUFFIX)), StandardCopyOption.ATOMIC_MOVE);
+            compact(position);
+            log.info("wal.snapshot position={} rows={}", position, rows);
+        } catch (IOException | RuntimeException e) {
+            log.error("wal.snapshot failed, the log keeps growing", e);
+        } finally {
+            this.lock.lock();
+            try {
+                this.snapshotting = false;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    // the older snapshots and the segments covered by the new one go away
+    private void compact(long position) throws IOException {
+        List<Segment> obsolete = new ArrayList<>();
+        this.lock.lock();
+        try {
+            this.lastSnapshot = position;
+            for (Segment segment : this.segments) {
+                if (segment != this.current && segment.start + this.segmentSize <= position) obsolete.add(segment);
+            }
+            this.segments.removeAll(obsolete);
+        } finally {
+            this.lock.unlock();
+        }
+        for (Segment segment : obsolete) Files.deleteIfExists(segment.path);
+        for (Path snapshot : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (positionOf(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < position) Files.deleteIfExists(snapshot);
+        }
+    }
+
+    // the newest complete snapshot, position it covers (0 if there is none)
+    private long loadSnapshot(Records target) throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path snapshot = snapshots.get(i);
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                SnapshotReader in = new SnapshotReader(channel);
+                ByteBuffer header = in.read(Integer.BYTES + 2 * Long.BYTES);
+                if (header == null || header.getInt() != SNAPSHOT_MAGIC) {
+                    log.warn("wal.snapshot {} unreadable, skipped", snapshot);
+                    continue;
+                }
+                long position = header.getLong(), lastId = header.getLong();
+                // streamed into the target, which is cleared again if the snapshot turns out incomplete
+                target.clear();
+                int rows = 0;
+                boolean complete = false;
+                ByteBuffer payload;
+                while ((payload = in.next()) != null) {
+                    byte type = payload.get();
+                    if (type == SNAPSHOT_END) {
+                        complete = payload.getInt() == rows;
+                        break;
+                    }
+                    put(payload, target);
+                    rows++;
+                }
+                if (!complete) {
+                    target.clear();
+                    log.warn("wal.snapshot {} incomplete, skipped", snapshot);
+                    continue;
+                }
+                target.lastId(lastId);
+                return position;
+            }
+        }
+        return 0;
+    }
+
+    // applies the records ending after covered, returns the offset of the end of the valid records
+    private int replay(Segment segment, long covered, Records target, boolean last) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(0);
+        ByteBuffer payload;
+        while ((payload = next(buffer)) != null) {
+            if (segment.start + buffer.position() <= covered) continue;
+            segment.records++;
+            byte type = payload.get();
+            if (type == PUT) {
+                target.lastId(put(payload, target));
+            } else if (type == DELETE) {
+                target.delete(payload.getLong());
+            } else if (type == CLEAR) {
+                target.clear();
+            }
+        }
+        int end = buffer.position();
+        boolean marker = buffer.remaining() >= Integer.BYTES && buffer.getInt(end) == 0;
+        if (!last && !marker) throw new IllegalStateException("corrupted write-ahead log segment " + segment.path + " at " + end);
+        if (last && !marker && end < buffer.limit()) {
+            // a torn append : it was never acknowledged, and the records appended after it must not end up
+            // behind garbage
+            log.warn("wal.replay torn record in {} at {}, truncated", segment.path, end);
+            int i = end;
+            for (; i + Long.BYTES <= buffer.limit(); i += Long.BYTES) segment.buffer.putLong(i, 0);
+            for (; i < buffer.limit(); i++) segment.buffer.put(i, (byte) 0);
+        }
+        return end;
+    }
+
+    // payload of the next valid record, null at the end (marker, torn or corrupted record)
+    private static ByteBuffer next(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER) return null;
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > buffer.remaining() - HEADER) return null;
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + HEADER).limit(start + HEADER + length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(start + Integer.BYTES)) return null;
+        buffer.position(start + HEADER + length);
+        return payload;
+    }
+
+    // replays a PUT payload, returns its id
+    private static long put(ByteBuffer payload, Records target) {
+        long id = payload.getLong(), version = payload.getLong(), start = payload.getLong(), end = payload.getLong();
+        String doctor = readString(payload), patient = readString(payload);
+        target.put(id, version, start, end, doctor, patient);
+        return id;
+    }
+
+    private static ByteBuffer putPayload(long id, long version, long start, long end, String doctor, String patient) {
+        byte[] doctorBytes = bytes(doctor), patientBytes = bytes(patient);
+        ByteBuffer record = record(PUT, 4 * Long.BYTES + 2 * Integer.BYTES + length(doctorBytes) + length(patientBytes));
+        record.putLong(id).putLong(version).putLong(start).putLong(end);
+        putBytes(record, doctorBytes);
+        putBytes(record, patientBytes);
+        return record;
+    }
+
+    // ready to be written
+    private static ByteBuffer sealed(ByteBuffer record) {
+        seal(record);
+        record.flip();
+        return record;
+    }
+
+    // the header is filled by seal(), once the payload is written
+    private static ByteBuffer record(byte type, int length) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER + 1 + length);
+        record.position(HEADER);
+        record.put(type);
+        return record;
+    }
+
+    private static void seal(ByteBuffer record) {
+        int length = record.position() - HEADER;
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER, length);
+        record.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+    }
+
+    private static byte[] bytes(String text) {
+        return text != null ? text.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    private static void putBytes(ByteBuffer record, byte[] bytes) {
+        record.putInt(bytes != null ? bytes.length : -1);
+        if (bytes != null) record.put(bytes);
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Segment newSegment(long start) throws IOException {
+        Segment segment = Segment.map(this.dir.resolve(name(SEGMENT_PREFIX, start, SEGMENT_SUFFIX)), this.segmentSize);
+        this.segments.add(segment);
+        return segment;
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(this.dir)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted((a, b) -> Long.compare(positionOf(a, prefix, suffix), positionOf(b, prefix, suffix)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String name(String prefix, long position, String suffix) {
+        return prefix + String.format("%020d", position) + suffix;
+    }
+
+    private static long positionOf(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        this.snapshotter.shutdown();
+        this.snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.appended.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        if (this.flusher != null) this.flusher.join(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    /**
+     * Receives the live rows for a snapshot, {@link #begin(long, long)} must be called first with the log position
+     * the rows are as of (the replay resumes from there).
+     */
+    public static final class SnapshotWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        private long position;
+        private int rows;
+
+        private SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public void begin(long position, long lastId) throws IOException {
+            this.position = position;
+            this.buffer.putInt(SNAPSHOT_MAGIC).putLong(position).putLong(lastId);
+        }
+
+        public void put(long id, long version, long start, long end, String doctor, String patient) throws IOException {
+            write(putPayload(id, version, start, end, doctor, patient));
+            this.rows++;
+        }
+
+        private void finish() throws IOException {
+            write(record(SNAPSHOT_END, Integer.BYTES).putInt(this.rows));
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+        }
+
+        private void write(ByteBuffer record) throws IOException {
+            seal(record);
+            record.flip();
+            if (this.buffer.remaining() < record.remaining()) {
+                this.buffer.flip();
+                while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+                this.buffer.clear();
+            }
+            if (record.remaining() > this.buffer.capacity()) {
+                while (record.hasRemaining()) this.channel.write(record);
+            } else {
+                this.buffer.put(record);
+            }
+        }
+    }
+
+    // the records of a snapshot file, read through a buffer (grown for a record larger than it)
+    private static final class SnapshotReader {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+        private SnapshotReader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer.flip();
+        }
+
+        // the next bytes, null if the file ends before
+        ByteBuffer read(int bytes) throws IOException {
+            if (!fill(bytes)) return null;
+            ByteBuffer read = this.buffer.slice();
+            read.limit(bytes);
+            this.buffer.position(this.buffer.position() + bytes);
+            return read;
+        }
+
+        // payload of the next valid record, null at the end (torn or corrupted record)
+        ByteBuffer next() throws IOException {
+            if (!fill(HEADER)) return null;
+            int length = this.buffer.getInt(this.buffer.position());
+            if (length <= 0 || length > this.channel.size() || !fill(HEADER + length)) return null;
+            return WriteAheadLog.next(this.buffer);
+        }
+
+        private boolean fill(int bytes) throws IOException {
+            if (this.buffer.remaining() >= bytes) return true;
+            if (bytes > this.buffer.capacity()) {
+                this.buffer = ByteBuffer.allocate(bytes).put(this.buffer);
+            } else {
+                this.buffer.compact();
+            }
+            while (this.buffer.position() < bytes && this.channel.read(this.buffer) >= 0) {
+                // until enough bytes or the end of the file
+            }
+            this.buffer.flip();
+            return this.buffer.remaining() >= bytes;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long start;
+        final MappedByteBuffer buffer;
+        int records;
+
+        private Segment(Path path, long start, MappedByteBuffer buffer) {
+            this.path = path;
+            this.start = start;
+            this.buffer = buffer;
+        }
+
+        // the file is created full size (zeroes), so the mapping never has to grow
+        static Segment map(Path path, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                return new Segment(path, positionOf(path, SEGMENT_PREFIX, SEGMENT_SUFFIX), buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package fr.univlr.info.AppointmentAPIV1;
+
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentController;
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentDateConstraint;
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentDateValidator;
+import fr.univlr.info.AppointmentAPIV1.controller.BatchItemResult;
+import fr.univlr.info.AppointmentAPIV1.controller.DoctorController;
+import fr.univlr.info.AppointmentAPIV1.controller.FreeSlot;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSummary;
+import fr.univlr.info.AppointmentAPIV1.model.CanonicalNameDeserializer;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentIntervalIndex;
+import fr.univlr.info.AppointmentAPIV1.store.CanonicalNameConverter;
+import fr.univlr.info.AppointmentAPIV1.store.EntityChangeCounter;
+import fr.univlr.info.AppointmentAPIV1.store.PooledSequenceGenerator;
+import org.springframework.nativex.hint.JdkProxyHint;
+import org.springframework.nativex.hint.NativeHint;
+import org.springframework.nativex.hint.TypeAccess;
+import org.springframework.nativex.hint.TypeHint;
+import org.springframework.nativex.type.NativeConfiguration;
+
+/**
+ * What the native image (mvn -Pnative package) can't find by itself : the classes only reached through
+ * reflection, by name or through proxies generated at runtime on the JVM. Registered in META-INF/spring.factories,
+ * only compiled with the native profile.
+ */
+@NativeHint(
+        types = {
+                // entities and representations : Hibernate, Jackson and the JPQL constructor expressions
+                @TypeHint(types = {Appointment.class, Doctor.class, AppointmentSummary.class, FreeSlot.class, BatchItemResult.class},
+                        access = {TypeAccess.DECLARED_CONSTRUCTORS, TypeAccess.DECLARED_FIELDS, TypeAccess.DECLARED_METHODS}),
+                // instantiated by Hibernate from their names, entity listener callbacks
+                @TypeHint(types = {PooledSequenceGenerator.class, CanonicalNameConverter.class, CanonicalNameConverter.Patient.class,
+                        CanonicalNameDeserializer.class, CanonicalNameDeserializer.Patient.class},
+                        access = TypeAccess.DECLARED_CONSTRUCTORS),
+                @TypeHint(types = {AppointmentIntervalIndex.Listener.class, EntityChangeCounter.Listener.class},
+                        access = {TypeAccess.DECLARED_CONSTRUCTORS, TypeAccess.DECLARED_METHODS}),
+                // instantiated by Hibernate Validator
+                @TypeHint(types = {AppointmentDateConstraint.class, AppointmentDateValidator.class},
+                        access = {TypeAccess.DECLARED_CONSTRUCTORS, TypeAccess.DECLARED_METHODS}),
+                // request mappings read by LinkTemplates
+                @TypeHint(types = {AppointmentController.class, DoctorController.class}, access = TypeAccess.DECLARED_METHODS)
+        },
+        // annotation instances created by Hibernate Validator
+        jdkProxies = @JdkProxyHint(types = AppointmentDateConstraint.class)
+)
+public class NativeHints implements NativeConfiguration {
+}
@@ -0,0 +1,25 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.ObjectError;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import java.util.List;
+
+// WebFlux counterpart of AppointmentIncoherentAdvice
+@ControllerAdvice
+@Profile("reactive")
+public class AppointmentIncoherentReactiveAdvice {
+    @ResponseBody
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.NOT_ACCEPTABLE)
+    String appointmentIncoherentHandler(WebExchangeBindException ex) {
+        List<ObjectError> errorList = ex.getBindingResult().getAllErrors();
+        return errorList.get(errorList.size()-1).getDefaultMessage();
+    }
+}
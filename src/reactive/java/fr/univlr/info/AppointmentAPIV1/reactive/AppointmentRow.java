@@ -0,0 +1,75 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of the appointment table as read and written through R2DBC, the table itself is the one
+ * mapped by the JPA entity {@link Appointment}.
+ */
+@Table("appointment")
+public class AppointmentRow {
+    @Id
+    private Long id;
+    @Version
+    private Long version;
+    private String doctor;
+    private LocalDateTime startDate, endDate;
+    private String patient;
+    private Long doctorId;
+
+    public AppointmentRow() {
+    }
+
+    static AppointmentRow of(Appointment appt, Long id, Long version, Long doctorId) {
+        AppointmentRow row = new AppointmentRow();
+        row.id = id;
+        row.version = version;
+        row.doctor = appt.getDoctor();
+        row.startDate = appt.getStart();
+        row.endDate = appt.getEnd();
+        row.patient = appt.getPatient();
+        row.doctorId = doctorId;
+        return row;
+    }
+
+    // same JSON representation as the servlet variant
+    Appointment toAppointment() {
+        Appointment appt = new Appointment(this.doctor, this.startDate, this.endDate, this.patient);
+        appt.setId(this.id);
+        appt.setVersion(this.version);
+        return appt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public LocalDateTime getStartDate() {
+        return startDate;
+    }
+
+    public LocalDateTime getEndDate() {
+        return endDate;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public Long getDoctorId() {
+        return doctorId;
+    }
+}
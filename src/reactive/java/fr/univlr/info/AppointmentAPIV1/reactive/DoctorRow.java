@@ -0,0 +1,32 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Row of the doctor table as read through R2DBC.
+ */
+@Table("doctor")
+public class DoctorRow {
+    @Id
+    private Long id;
+    private String name;
+
+    public DoctorRow() {
+    }
+
+    Doctor toDoctor() {
+        Doctor doctor = new Doctor(this.name);
+        doctor.setId(this.id);
+        return doctor;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
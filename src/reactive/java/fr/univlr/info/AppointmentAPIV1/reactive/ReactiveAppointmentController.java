@@ -0,0 +1,137 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentController;
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentNotFoundException;
+import fr.univlr.info.AppointmentAPIV1.controller.DoctorNotFoundException;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentDates;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.time.LocalDateTime;
+
+/**
+ * Appointment routes of the reactive variant. The listings are {@link Flux}es read from the R2DBC cursor,
+ * as {@code application/x-ndjson} they are written row by row with backpressure, as JSON they are one array.
+ * The HAL representation and the bulk import are only served by the servlet variant.
+ * A booking checks the overlaps and inserts in one transaction holding the doctor's row lock, like the doctor's
+ * lock of the servlet variant, two overlapping requests can't both get through.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping(path = "/api")
+public class ReactiveAppointmentController {
+    static final int DEFAULT_PAGE_SIZE = AppointmentController.DEFAULT_PAGE_SIZE;
+    static final int MAX_PAGE_SIZE = AppointmentController.MAX_PAGE_SIZE;
+
+    private final ReactiveAppointmentRepository apptRepository;
+    private final ReactiveDoctorRepository doctorRepository;
+    private final R2dbcEntityTemplate template;
+    private final TransactionalOperator tx;
+
+    public ReactiveAppointmentController(ReactiveAppointmentRepository apptRepository, ReactiveDoctorRepository doctorRepository,
+                                         R2dbcEntityTemplate template, ReactiveTransactionManager txManager) {
+        this.apptRepository = apptRepository;
+        this.doctorRepository = doctorRepository;
+        this.template = template;
+        this.tx = TransactionalOperator.create(txManager);
+    }
+
+    @GetMapping(value = "/appointments", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    Flux<Appointment> all(@RequestParam(required = false) String date, @RequestParam(required = false) Long after,
+                          @RequestParam(required = false) Integer limit) {
+        LocalDateTime targetDate = date != null ? AppointmentDates.parse(date) : null;
+        if (date != null && targetDate == null) return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+
+        Flux<AppointmentRow> rows;
+        if (after != null || limit != null) {
+            // keyset pagination, the client asks for the next page with the last id it got
+            PageRequest page = PageRequest.of(0, limit != null ? limit : DEFAULT_PAGE_SIZE);
+            long from = after != null ? after : 0L;
+            rows = targetDate != null
+                    ? this.apptRepository.findByStartDateAfterAndIdGreaterThanOrderByIdAsc(targetDate, from, page)
+                    : this.apptRepository.findByIdGreaterThanOrderByIdAsc(from, page);
+        } else {
+            rows = targetDate != null
+                    ? this.apptRepository.findByStartDateAfterOrderByIdAsc(targetDate)
+                    : this.apptRepository.findAllByOrderByIdAsc();
+        }
+        return rows.map(AppointmentRow::toAppointment);
+    }
+
+    @GetMapping("/appointments/{id}")
+    Mono<Appointment> one(@PathVariable Long id) {
+        return this.apptRepository.findById(id)
+                .map(AppointmentRow::toAppointment)
+                .switchIfEmpty(Mono.error(() -> new AppointmentNotFoundException(id)));
+    }
+
+    @PostMapping("/appointments")
+    Mono<ResponseEntity<Appointment>> newAppointment(@Valid @RequestBody Appointment appt, UriComponentsBuilder uri) {
+        return doctorId(appt.getDoctor())
+                .flatMap(doctorId -> this.doctorRepository.lockById(doctorId)
+                        .then(this.apptRepository.existsOverlapping(appt.getDoctor(), appt.getStart(), appt.getEnd(), null))
+                        .flatMap(conflict -> conflict
+                                ? Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<Appointment>build())
+                                : this.apptRepository.nextId()
+                                        .flatMap(id -> this.template.insert(AppointmentRow.of(appt, id, null, doctorId)))
+                                        .map(row -> ResponseEntity
+                                                .created(uri.path("/api/appointments/{id}").buildAndExpand(row.getId()).toUri())
+                                                .body(row.toAppointment())))
+                        .as(this.tx::transactional));
+    }
+
+    @PutMapping("/appointments/{id}")
+    Mono<ResponseEntity<Appointment>> updateAppoint(@RequestBody Appointment appt, @PathVariable Long id, UriComponentsBuilder uri) {
+        return doctorId(appt.getDoctor())
+                .flatMap(doctorId -> this.apptRepository.findById(id)
+                        .flatMap(current -> this.template.update(AppointmentRow.of(appt, id, current.getVersion(), doctorId)))
+                        // a new appointment, its id is generated like for a POST
+                        .switchIfEmpty(Mono.defer(() -> this.apptRepository.nextId()
+                                .flatMap(newId -> this.template.insert(AppointmentRow.of(appt, newId, null, doctorId))))))
+                .map(row -> ResponseEntity
+                        .created(uri.path("/api/appointments/{id}").buildAndExpand(row.getId()).toUri())
+                        .body(row.toAppointment()));
+    }
+
+    @DeleteMapping("/appointments/{id}/cancel")
+    Mono<ResponseEntity<Void>> cancel(@PathVariable Long id) {
+        return this.apptRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new AppointmentNotFoundException(id)))
+                .flatMap(row -> row.getStartDate().isBefore(LocalDateTime.now())
+                        ? Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<Void>build())
+                        : this.apptRepository.deleteById(id).thenReturn(ResponseEntity.ok().<Void>build()));
+    }
+
+    @DeleteMapping("/appointments/{id}")
+    Mono<Void> deleteAppointment(@PathVariable Long id) {
+        return this.apptRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new AppointmentNotFoundException(id)))
+                .flatMap(row -> this.apptRepository.deleteById(id));
+    }
+
+    @DeleteMapping("/appointments")
+    Mono<Void> deleteAllAppointments() {
+        return this.apptRepository.deleteAll();
+    }
+
+    // an appointment must reference an existing doctor (foreign key)
+    private Mono<Long> doctorId(String name) {
+        return this.doctorRepository.findByName(name)
+                .map(DoctorRow::getId)
+                .switchIfEmpty(Mono.error(() -> new DoctorNotFoundException(name)));
+    }
+}
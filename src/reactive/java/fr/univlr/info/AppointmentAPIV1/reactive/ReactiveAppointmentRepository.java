@@ -0,0 +1,29 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Profile("reactive")
+public interface ReactiveAppointmentRepository extends ReactiveCrudRepository<AppointmentRow, Long> {
+    // half-open overlap test, like AppointmentIntervalIndex, served by idx_appointment_doctor_range
+    @Query("SELECT count(*) > 0 FROM appointment WHERE doctor = :doctor AND start_date < :endDate AND end_date > :startDate"
+            + " AND (:id IS NULL OR id <> :id)")
+    Mono<Boolean> existsOverlapping(String doctor, LocalDateTime startDate, LocalDateTime endDate, Long id);
+
+    // the whole id block of a pooled-lo sequence value is taken, so the ids never collide with the JPA ones
+    @Query("SELECT NEXT VALUE FOR appointment_seq")
+    Mono<Long> nextId();
+
+    Flux<AppointmentRow> findAllByOrderByIdAsc();
+    Flux<AppointmentRow> findByStartDateAfterOrderByIdAsc(LocalDateTime date);
+    Flux<AppointmentRow> findByIdGreaterThanOrderByIdAsc(Long id, Pageable page);
+    Flux<AppointmentRow> findByStartDateAfterAndIdGreaterThanOrderByIdAsc(LocalDateTime date, Long id, Pageable page);
+    Flux<AppointmentRow> findByDoctorOrderByIdAsc(String doctor);
+    Mono<Boolean> existsByDoctorId(Long doctorId);
+}
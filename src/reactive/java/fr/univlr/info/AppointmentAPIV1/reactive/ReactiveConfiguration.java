@@ -0,0 +1,16 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+@Profile("reactive")
+class ReactiveConfiguration {
+    // Tomcat is on the classpath too (servlet variant), Boot would pick it before Netty
+    @Bean
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
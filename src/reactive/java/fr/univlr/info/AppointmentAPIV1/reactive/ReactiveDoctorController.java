@@ -0,0 +1,51 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@Profile("reactive")
+@RequestMapping(path = "/api")
+public class ReactiveDoctorController {
+    private final ReactiveDoctorRepository doctorRepository;
+    private final ReactiveAppointmentRepository appointmentRepository;
+
+    public ReactiveDoctorController(ReactiveDoctorRepository doctorRepository, ReactiveAppointmentRepository appointmentRepository) {
+        this.doctorRepository = doctorRepository;
+        this.appointmentRepository = appointmentRepository;
+    }
+
+    @GetMapping("/doctors")
+    Flux<Doctor> all() {
+        return this.doctorRepository.findAll().map(DoctorRow::toDoctor);
+    }
+
+    @GetMapping("/doctors/{name}")
+    Mono<ResponseEntity<Doctor>> getDoctor(@PathVariable String name) {
+        return this.doctorRepository.findByName(name)
+                .map(row -> ResponseEntity.ok(row.toDoctor()))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @GetMapping(value = "/doctors/{name}/appointments", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    Flux<Appointment> getAppointments(@PathVariable String name) {
+        return this.appointmentRepository.findByDoctorOrderByIdAsc(name).map(AppointmentRow::toAppointment);
+    }
+
+    @DeleteMapping("/doctors/{name}")
+    Mono<ResponseEntity<Void>> deleteDoctor(@PathVariable String name) {
+        return this.doctorRepository.findByName(name)
+                .flatMap(doctor -> this.appointmentRepository.existsByDoctorId(doctor.getId())
+                        .flatMap(booked -> booked
+                                ? Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).<Void>build())
+                                : this.doctorRepository.delete(doctor).thenReturn(ResponseEntity.ok().<Void>build())))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,15 @@
+package fr.univlr.info.AppointmentAPIV1.reactive;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+@Profile("reactive")
+public interface ReactiveDoctorRepository extends ReactiveCrudRepository<DoctorRow, Long> {
+    Mono<DoctorRow> findByName(String name);
+
+    // locks the doctor's row up to the end of the transaction : the bookings of a doctor are serialized
+    @Query("SELECT id FROM doctor WHERE id = :id FOR UPDATE")
+    Mono<Long> lockById(Long id);
+}
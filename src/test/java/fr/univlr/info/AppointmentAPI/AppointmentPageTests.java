@@ -0,0 +1,86 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Links;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset pagination of GET /api/appointments : a full page links the next one (Link header), the last page doesn't.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+public class AppointmentPageTests {
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final LocalDateTime origin = LocalDateTime.now().plusDays(90).truncatedTo(ChronoUnit.DAYS);
+
+    @BeforeEach
+    public void populate() {
+        if (appointmentRepository.count() == 0) {
+            for (int i = 0; i < 3; i++) {
+                LocalDateTime start = origin.plusHours(9 + i);
+                appointmentRepository.save(new Appointment("mjones", start, start.plusMinutes(30), "patient" + i));
+            }
+        }
+    }
+
+    private static Optional<Link> next(ResponseEntity<?> response) {
+        String header = response.getHeaders().getFirst(HttpHeaders.LINK);
+        return header == null ? Optional.empty() : Links.parse(header).getLink(IanaLinkRelations.NEXT);
+    }
+
+    @Test
+    public void testFullPageLinksNextPage() {
+        ResponseEntity<Appointment[]> first = restTemplate.getForEntity("http://localhost:" + port + "/api/appointments?limit=2", Appointment[].class);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNotNull(first.getBody());
+        assertEquals(2, first.getBody().length);
+        Link next = next(first).orElseThrow(() -> new AssertionError("no next link on a full page"));
+        assertTrue(next.getHref().startsWith("http://localhost:" + port + "/api/appointments?"), next.getHref());
+        assertTrue(next.getHref().contains("after=" + first.getBody()[1].getId()), next.getHref());
+        assertTrue(next.getHref().contains("limit=2"), next.getHref());
+
+        ResponseEntity<Appointment[]> second = restTemplate.getForEntity(next.toUri(), Appointment[].class);
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertNotNull(second.getBody());
+        assertEquals(1, second.getBody().length);
+        assertFalse(next(second).isPresent());
+    }
+
+    @Test
+    public void testNextPageKeepsTheDate() {
+        String date = origin.toLocalDate() + "T08:00";
+        ResponseEntity<Appointment[]> first = restTemplate.getForEntity("http://localhost:" + port + "/api/appointments?limit=1&date=" + date, Appointment[].class);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        Link next = next(first).orElseThrow(() -> new AssertionError("no next link on a full page"));
+        assertTrue(next.toUri().getQuery().contains("date=" + date), next.getHref());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(next.toUri(), Appointment[].class).getStatusCode());
+    }
+}
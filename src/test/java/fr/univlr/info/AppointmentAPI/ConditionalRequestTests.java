@@ -0,0 +1,91 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ETags of the collections : a listing cached by a client must be served again (200) once the appointments
+ * changed, and a collection tag is never taken as the version of an appointment.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+public class ConditionalRequestTests {
+    private static final long SLOT = TimeUnit.MINUTES.toMillis(30);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    // a whole hour, two months from now
+    private final long origin = (System.currentTimeMillis() / TimeUnit.HOURS.toMillis(1) + 24 * 60) * TimeUnit.HOURS.toMillis(1);
+
+    private ResponseEntity<String> get(String path, String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        if (ifNoneMatch != null) headers.setIfNoneMatch(ifNoneMatch);
+        return restTemplate.exchange("http://localhost:" + port + path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private ResponseEntity<Appointment> book(String doctor, long start) {
+        Appointment appt = new Appointment(doctor, new Date(start), new Date(start + SLOT), "patient1");
+        return restTemplate.postForEntity("http://localhost:" + port + "/api/appointments", appt, Appointment.class);
+    }
+
+    @Test
+    public void testListingChangesAfterPost() {
+        for (String path : new String[]{"/api/appointments", "/api/doctors/jsmith/appointments"}) {
+            ResponseEntity<String> first = get(path, null);
+            assertEquals(HttpStatus.OK, first.getStatusCode());
+            String etag = first.getHeaders().getETag();
+            assertNotNull(etag);
+            assertEquals(HttpStatus.NOT_MODIFIED, get(path, etag).getStatusCode());
+
+            assertEquals(HttpStatus.CREATED, book("jsmith", origin + (path.length() % 7) * TimeUnit.DAYS.toMillis(1)).getStatusCode());
+
+            ResponseEntity<String> second = get(path, etag);
+            assertEquals(HttpStatus.OK, second.getStatusCode());
+            assertNotEquals(etag, second.getHeaders().getETag());
+        }
+    }
+
+    @Test
+    public void testCollectionTagIsNotAVersion() {
+        ResponseEntity<Appointment> created = book("mjones", origin + TimeUnit.DAYS.toMillis(30));
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        Appointment appt = created.getBody();
+        assertNotNull(appt);
+        String collectionTag = get("/api/appointments", null).getHeaders().getETag();
+        String entityTag = get("/api/appointments/" + appt.getId(), null).getHeaders().getETag();
+        assertNotNull(entityTag);
+        String version = entityTag.substring(1, entityTag.length() - 1);
+
+        // a collection tag, and a tag shaped like one starting with the version of the appointment
+        for (String ifMatch : new String[]{collectionTag, "\"" + version + ".5-\""}) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setIfMatch(ifMatch);
+            ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + "/api/appointments/" + appt.getId(),
+                    HttpMethod.PUT, new HttpEntity<>(appt, headers), String.class);
+            assertEquals(HttpStatus.PRECONDITION_FAILED, response.getStatusCode(), ifMatch);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfMatch(entityTag);
+        ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + "/api/appointments/" + appt.getId(),
+                HttpMethod.PUT, new HttpEntity<>(appt, headers), String.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    }
+}
@@ -0,0 +1,54 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentIntervalIndex;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The conflict index the bookings are checked against must follow what is written through the repository
+ * (the entity listener instances are Hibernate's, not the index bean).
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class)
+@DirtiesContext
+public class ConflictIndexTests {
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentIntervalIndex index;
+
+    private final LocalDateTime start = LocalDateTime.now().plusDays(60).truncatedTo(ChronoUnit.HOURS);
+
+    @Test
+    public void testSavedAppointmentOverlaps() {
+        Appointment saved = appointmentRepository.save(new Appointment("jsmith", start, start.plusMinutes(30), "patient1"));
+        assertTrue(index.overlaps("jsmith", start.plusMinutes(15), start.plusMinutes(45)));
+        assertFalse(index.overlaps("jsmith", start.plusMinutes(30), start.plusMinutes(60)));
+        assertFalse(index.overlaps("mjones", start, start.plusMinutes(30)));
+
+        appointmentRepository.deleteById(saved.getId());
+        assertFalse(index.overlaps("jsmith", start.plusMinutes(15), start.plusMinutes(45)));
+    }
+
+    @Test
+    public void testMovedAppointmentFreesItsSlot() {
+        LocalDateTime later = start.plusDays(1);
+        Appointment saved = appointmentRepository.save(new Appointment("jdoe", later, later.plusMinutes(30), "patient2"));
+        saved.setStart(later.plusHours(2));
+        saved.setEnd(later.plusHours(2).plusMinutes(30));
+        appointmentRepository.save(saved);
+        assertFalse(index.overlaps("jdoe", later, later.plusMinutes(30)));
+        assertTrue(index.overlaps("jdoe", later.plusHours(2), later.plusHours(3)));
+    }
+}
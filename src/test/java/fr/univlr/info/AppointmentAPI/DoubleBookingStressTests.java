@@ -0,0 +1,153 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.controller.DoctorLocks;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Concurrent bookings : overlapping POSTs for the same doctor must never both succeed,
+ * while the bookings of other doctors don't wait for them. A PUT can't move an appointment onto a booked slot.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+public class DoubleBookingStressTests {
+    private static final int THREADS = 32;
+    private static final int SLOTS = 40;
+    private static final long SLOT = TimeUnit.MINUTES.toMillis(30);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private DoctorLocks locks;
+
+    // a whole hour, a month from now
+    private final long origin = (System.currentTimeMillis() / TimeUnit.HOURS.toMillis(1) + 24 * 30) * TimeUnit.HOURS.toMillis(1);
+
+    private HttpStatus book(String doctor, long start, String patient) {
+        Appointment appt = new Appointment(doctor, new Date(start), new Date(start + SLOT), patient);
+        return restTemplate.postForEntity("http://localhost:" + port + "/api/appointments", appt, String.class).getStatusCode();
+    }
+
+    @Test
+    public void testNoOverlapUnderContention() throws Exception {
+        // every thread goes through the same slots (in a different order), each one overlaps its two neighbours
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(pool.submit(() -> {
+                go.await();
+                int created = 0;
+                for (int i = 0; i < SLOTS; i++) {
+                    long start = origin + ((i + thread) % SLOTS) * SLOT / 2;
+                    HttpStatus status = book("mjones", start, "patient" + thread);
+                    if (status == HttpStatus.CREATED) created++;
+                    else assertEquals(HttpStatus.CONFLICT, status);
+                }
+                return created;
+            }));
+        }
+        go.countDown();
+        int created = 0;
+        for (Future<Integer> result : results) {
+            created += result.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        List<Appointment> booked = appointmentRepository.findAll().stream()
+                .filter(appt -> appt.getDoctor().equals("mjones") && appt.getStartDate().getTime() < origin + TimeUnit.DAYS.toMillis(1))
+                .sorted(Comparator.comparing(Appointment::getStart))
+                .collect(Collectors.toList());
+        assertTrue(created > 0);
+        assertEquals(created, booked.size());
+        for (int i = 1; i < booked.size(); i++) {
+            assertFalse(booked.get(i).getStart().isBefore(booked.get(i - 1).getEnd()),
+                    "double booking : " + booked.get(i - 1) + " and " + booked.get(i));
+        }
+    }
+
+    private HttpStatus update(long id, String doctor, long start, String patient) {
+        Appointment appt = new Appointment(doctor, new Date(start), new Date(start + SLOT), patient);
+        return restTemplate.exchange("http://localhost:" + port + "/api/appointments/" + id, HttpMethod.PUT,
+                new HttpEntity<>(appt), String.class).getStatusCode();
+    }
+
+    @Test
+    public void testUpdateCannotMoveOntoBookedSlot() {
+        long start = origin + TimeUnit.DAYS.toMillis(200);
+        assertEquals(HttpStatus.CREATED, book("jdoe", start, "patient1"));
+        Appointment other = restTemplate.postForObject("http://localhost:" + port + "/api/appointments",
+                new Appointment("jdoe", new Date(start + 2 * SLOT), new Date(start + 3 * SLOT), "patient2"), Appointment.class);
+        assertNotNull(other);
+
+        // onto the first appointment, partly or fully, through a PUT on the existing id or on a new one
+        assertEquals(HttpStatus.CONFLICT, update(other.getId(), "jdoe", start, "patient2"));
+        assertEquals(HttpStatus.CONFLICT, update(other.getId(), "jdoe", start + SLOT / 2, "patient2"));
+        assertEquals(HttpStatus.CONFLICT, update(other.getId() + 1000, "jdoe", start, "patient3"));
+        // within its own slot, and to a free one
+        assertEquals(HttpStatus.CREATED, update(other.getId(), "jdoe", start + 2 * SLOT + SLOT / 2, "patient2"));
+        assertEquals(HttpStatus.CREATED, update(other.getId(), "jdoe", start + SLOT, "patient2"));
+        assertEquals(HttpStatus.CONFLICT, book("jdoe", start + SLOT, "patient4"));
+    }
+
+    @Test
+    public void testOtherDoctorsDontWait() throws Exception {
+        assumeFalse(locks.sameStripe("mjones", "jsmith"));
+        long start = origin + TimeUnit.DAYS.toMillis(365);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // a booking of mjones in progress, holding its lock
+        Thread holder = new Thread(() -> locks.withLock("mjones", () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        held.await();
+        try {
+            CompletableFuture<HttpStatus> jsmith = CompletableFuture.supplyAsync(() -> book("jsmith", start, "patient1"));
+            assertEquals(HttpStatus.CREATED, jsmith.get(10, TimeUnit.SECONDS));
+
+            CompletableFuture<HttpStatus> mjones = CompletableFuture.supplyAsync(() -> book("mjones", start, "patient2"));
+            assertThrows(TimeoutException.class, () -> mjones.get(300, TimeUnit.MILLISECONDS));
+            release.countDown();
+            assertEquals(HttpStatus.CREATED, mjones.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.*;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.client.RestTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Regression guard for the collection endpoints : each of them must be served by a single SQL statement,
+ * whatever the representation (JSON or HAL) and the filters used.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@DirtiesContext
+public class ListQueryCountTests {
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private static final String nextYear = String.valueOf((new GregorianCalendar()).get(Calendar.YEAR) + 1);
+
+    @BeforeEach
+    public void populate() {
+        if (appointmentRepository.count() == 0) {
+            appointmentRepository.save(new Appointment("mjones",
+                    AppointmentApiTests.parseDate(nextYear + "-03-02T9:00"), AppointmentApiTests.parseDate(nextYear + "-03-02T9:30"), "patient1"));
+            appointmentRepository.save(new Appointment("jdoe",
+                    AppointmentApiTests.parseDate(nextYear + "-04-02T9:00"), AppointmentApiTests.parseDate(nextYear + "-04-02T9:30"), "patient2"));
+        }
+    }
+
+    private long statementsFor(String path, String accept) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Accept", accept);
+        ResponseEntity<String> response = restTemplate.exchange("http://localhost:" + port + path,
+                HttpMethod.GET, new HttpEntity<>("", headers), String.class);
+        assertSame(response.getStatusCode(), HttpStatus.OK);
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    public void testAllAppointmentsSingleQuery() {
+        assertEquals(1, statementsFor("/api/appointments", MediaType.APPLICATION_JSON_VALUE));
+        assertEquals(1, statementsFor("/api/appointments", MediaTypes.HAL_JSON_VALUE));
+    }
+
+    @Test
+    public void testAppointmentsAfterDateSingleQuery() {
+        String path = "/api/appointments?date=" + nextYear + "-03-15T10:00";
+        assertEquals(1, statementsFor(path, MediaType.APPLICATION_JSON_VALUE));
+        assertEquals(1, statementsFor(path, MediaTypes.HAL_JSON_VALUE));
+    }
+
+    @Test
+    public void testAppointmentsPageSingleQuery() {
+        assertEquals(1, statementsFor("/api/appointments?limit=1", MediaType.APPLICATION_JSON_VALUE));
+        assertEquals(1, statementsFor("/api/appointments?limit=1", MediaTypes.HAL_JSON_VALUE));
+    }
+
+    @Test
+    public void testAllDoctorsSingleQuery() {
+        assertEquals(1, statementsFor("/api/doctors", MediaType.APPLICATION_JSON_VALUE));
+        assertEquals(1, statementsFor("/api/doctors", MediaTypes.HAL_JSON_VALUE));
+    }
+}
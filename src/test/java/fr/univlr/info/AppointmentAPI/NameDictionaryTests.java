@@ -0,0 +1,57 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.NameDictionary;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Canonical names : a full dictionary keeps serving the names it knows, and the names sent by the clients
+ * never go into the doctor dictionary.
+ */
+public class NameDictionaryTests {
+
+    @Test
+    public void testFullDictionary() {
+        NameDictionary names = new NameDictionary(2);
+        String mjones = names.canonical(new String("mjones"));
+        String jsmith = names.canonical(new String("jsmith"));
+        int code = names.code("mjones");
+
+        // full : a new name is handed back as it is, without a code
+        String jdoe = new String("jdoe");
+        assertSame(jdoe, names.canonical(jdoe));
+        assertEquals(NameDictionary.NO_CODE, names.code(jdoe));
+        assertSame(jdoe, names.existing(jdoe));
+        assertEquals(2, names.size());
+
+        // the names already there stay canonical, with the same codes
+        assertSame(mjones, names.canonical(new String("mjones")));
+        assertSame(jsmith, names.existing(new String("jsmith")));
+        assertEquals(code, names.code(new String("mjones")));
+        assertSame(mjones, names.name(code));
+    }
+
+    @Test
+    public void testRequestsDontFillTheDoctors() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        String known = NameDictionary.DOCTORS.canonical(new String("mjones"));
+        int size = NameDictionary.DOCTORS.size();
+
+        for (int i = 0; i < 10_000; i++) {
+            Appointment appt = mapper.readValue("{\"doctor\":\"doctor" + i + "\",\"patient\":\"patient" + i + "\"}", Appointment.class);
+            assertEquals("doctor" + i, appt.getDoctor());
+        }
+        assertEquals(size, NameDictionary.DOCTORS.size());
+
+        // a known doctor is still read as its canonical instance, the patients share theirs
+        Appointment first = mapper.readValue("{\"doctor\":\"mjones\",\"patient\":\"patient1\"}", Appointment.class);
+        Appointment second = mapper.readValue("{\"doctor\":\"mjones\",\"patient\":\"patient1\"}", Appointment.class);
+        assertSame(known, first.getDoctor());
+        assertSame(first.getPatient(), second.getPatient());
+    }
+}
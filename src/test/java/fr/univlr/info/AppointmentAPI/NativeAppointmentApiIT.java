@@ -0,0 +1,82 @@
+package fr.univlr.info.AppointmentAPI;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.config.EnableHypermediaSupport;
+import org.springframework.hateoas.config.HypermediaRestTemplateConfigurer;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scenarios of {@link AppointmentApiTests} against the native executable (mvn -Pnative verify) instead of an
+ * application started in the test JVM : the executable is started on a free port, the test context only holds
+ * the client.
+ */
+@SpringBootTest(classes = NativeAppointmentApiIT.Client.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+public class NativeAppointmentApiIT extends AppointmentApiTests {
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static Process executable;
+    private static int port;
+
+    @BeforeAll
+    static void startExecutable() throws IOException, InterruptedException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        executable = new ProcessBuilder(System.getProperty("native.executable"), "--server.port=" + port)
+                .inheritIO()
+                .start();
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/doctors")).build();
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                client.send(probe, HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (ConnectException e) {
+                if (!executable.isAlive() || System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("native executable not started on port " + port, e);
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopExecutable() throws InterruptedException {
+        if (executable != null) {
+            executable.destroy();
+            executable.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // read by the @LocalServerPort of AppointmentApiTests
+    @DynamicPropertySource
+    static void serverPort(DynamicPropertyRegistry registry) {
+        registry.add("local.server.port", () -> port);
+    }
+
+    // the same client as the application's (see LoadDatabase)
+    @Configuration(proxyBeanMethods = false)
+    @EnableHypermediaSupport(type = EnableHypermediaSupport.HypermediaType.HAL)
+    static class Client {
+        @Bean
+        RestTemplate hypermediaRestTemplate(HypermediaRestTemplateConfigurer configurer) {
+            return configurer.registerHypermediaTypes(new RestTemplate());
+        }
+    }
+}